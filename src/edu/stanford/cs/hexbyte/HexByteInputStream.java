@@ -7,13 +7,13 @@
 
 package edu.stanford.cs.hexbyte;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 public class HexByteInputStream extends InputStream {
 
@@ -40,32 +40,47 @@ public class HexByteInputStream extends InputStream {
    }
 
    public static byte[] toByteArray(String str) {
-      HexByteInputStream in = new HexByteInputStream(str);
-      ByteArrayOutputStream out = new ByteArrayOutputStream();
-      try {
-         while (true) {
-            int ch = in.read();
-            if (ch == -1) break;
-            out.write(ch);
+      int n = str.length();
+      byte[] buffer = new byte[n / 2];
+      int nBytes = 0;
+      int high = -1;
+      for (int i = 0; i < n; i++) {
+         char ch = str.charAt(i);
+         int digit = hexDigitValue(ch);
+         if (digit == -1) {
+            if (Character.isWhitespace(ch)) continue;
+            throw new RuntimeException("Illegal character " + (int) ch);
+         }
+         if (high == -1) {
+            high = digit;
+         } else {
+            buffer[nBytes++] = (byte) (high << 4 | digit);
+            high = -1;
          }
-         in.close();
-      } catch (IOException ex) {
-         throw new RuntimeException(ex.getMessage());
       }
-      return out.toByteArray();
+      if (high != -1) throw new RuntimeException("Odd number of hex digits");
+      if (nBytes == buffer.length) return buffer;
+      return Arrays.copyOf(buffer, nBytes);
    }
 
    private int readHexDigit() throws IOException {
       while (true) {
          int ch = rd.read();
          if (ch == -1) return -1;
-         int index = "0123456789ABCDEF".indexOf(Character.toUpperCase(ch));
+         int index = hexDigitValue(ch);
          if (index >= 0) return index;
          if (!Character.isWhitespace(ch)) {
             throw new UnsupportedEncodingException("Illegal character " + ch);
          }
       }
    }
+
+   private static int hexDigitValue(int ch) {
+      if (ch >= '0' && ch <= '9') return ch - '0';
+      if (ch >= 'A' && ch <= 'F') return ch - 'A' + 10;
+      if (ch >= 'a' && ch <= 'f') return ch - 'a' + 10;
+      return -1;
+   }
 /* Private instance variables */
 
    private Reader rd;
@@ -7,11 +7,16 @@
 
 package edu.stanford.cs.options;
 
-import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.StringReader;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class implements a simple tool for parsing key/value pairs.
@@ -36,10 +41,11 @@ import java.lang.reflect.Method;
  * of the possible keys, where the name of the key method is the
  * name of the key followed by the suffix <code>"Key"</code>.
  * When executing the <code>parseOptions</code> method, the
- * class uses reflection to invoke those functions in the subclass
- * object, passing in the value string as a parameter.  If no method
- * is found for a particular key, the <code>parseOptions</code>
- * method invokes
+ * class invokes those functions in the subclass object, passing in
+ * the value string as a parameter.  The key methods are located by
+ * reflection only once for each class, when that class first parses
+ * an option string.  If no method is found for a particular key,
+ * the <code>parseOptions</code> method invokes
  *
  *<pre>
  *    undefinedKey(key, value)
@@ -54,44 +60,74 @@ public abstract class OptionParser {
 
 /**
  * Parses the option string, invoking the callbacks on this object.
+ * The result of parsing a string is cached for each class, so that a
+ * string that was parsed before is applied without scanning it again.
  *
  * @param str The option string to be parsed
  */
 
    public void parseOptions(String str) {
+      KeyTable table = keyTables.get(getClass());
+      int limit = optionCacheSize;
+      ParsedOptions options = (limit > 0) ? table.getParsedOptions(str) : null;
+      if (options == null) {
+         options = compileOptions(str, table);
+         table.putParsedOptions(str, options, limit);
+      }
       preOptionHook();
-      try {
-         StreamTokenizer tokenizer = createTokenizer(str);
-         int ttype = tokenizer.nextToken();
-         while (ttype != StreamTokenizer.TT_EOF) {
-            if (ttype == '/') {
-               ttype = tokenizer.nextToken();
-            }
-            if (ttype != StreamTokenizer.TT_WORD) {
-               String msg = "Illegal key in option string: " + str;
-               throw new RuntimeException(msg);
-            }
-            String key = tokenizer.sval;
-            String value = "";
-            ttype = tokenizer.nextToken();
-            if (ttype == ':') {
-               ttype = tokenizer.nextToken();
-               if (ttype != StreamTokenizer.TT_WORD &&
-                   ttype != '"' && ttype != '\'') {
-                  String msg = "Illegal key in option string: " + str;
-                  throw new RuntimeException(msg);
-               }
-               value = tokenizer.sval;
-               ttype = tokenizer.nextToken();
-            }
-            invokeKey(key, value);
+      for (int i = 0; i < options.size(); i++) {
+         MethodHandle fn = options.getMethod(i);
+         if (fn != null && table.isDirect()) {
+            invokeMethod(fn, options.getValue(i));
+         } else {
+            invokeKey(options.getKey(i), options.getValue(i));
          }
-      } catch (IOException ex) {
-         throw new RuntimeException("Illegal option string: " + str);
       }
       postOptionHook();
    }
 
+/**
+ * Sets the number of option strings whose parsed form is cached for
+ * each class.  When the cache for a class is full, the string that was
+ * used least recently is evicted.  A size of zero disables the cache.
+ *
+ * @param size The maximum number of cached strings for each class
+ */
+
+   public static void setOptionCacheSize(int size) {
+      optionCacheSize = Math.max(0, size);
+   }
+
+/**
+ * Returns the number of option strings cached for each class.
+ *
+ * @return The maximum number of cached strings for each class
+ */
+
+   public static int getOptionCacheSize() {
+      return optionCacheSize;
+   }
+
+/**
+ * Returns the number of option strings that were found in the cache.
+ *
+ * @return The number of cache hits
+ */
+
+   public static long getOptionCacheHits() {
+      return sum(optionCacheHits);
+   }
+
+/**
+ * Returns the number of option strings that had to be parsed.
+ *
+ * @return The number of cache misses
+ */
+
+   public static long getOptionCacheMisses() {
+      return sum(optionCacheMisses);
+   }
+
 /**
  * Allows subclasses to specify processing that is done before
  * the options are parsed.  Subclasses should call this method
@@ -113,24 +149,23 @@ public abstract class OptionParser {
    }
 
 /**
- * Invokes a key in the target class using reflection.  Any
- * package-private classes that extend OptionParser must copy
- * this method to ensure that the reflection does not get
- * blocked by the package-private check.
+ * Invokes the method for a key in the target class.  The methods for
+ * the keys of each class are found once, when the class first parses
+ * an option string, and are called through method handles after that.
+ * If a subclass does not override this method, <code>parseOptions</code>
+ * calls the key methods directly.
+ *
+ * @param key The key in the key/value pair
+ * @param value The corresponding value string
  */
 
    public void invokeKey(String key, String value) {
-      Class<?>[] types = { String.class };
-      Object[] args = { value };
-      try {
-         Method fn = getClass().getMethod(key + "Key", types);
-         fn.invoke(this, args);
-      } catch (NoSuchMethodException ex) {
+      KeyTable table = keyTables.get(getClass());
+      int index = table.find(key, 0, key.length(), key.hashCode());
+      if (index == -1) {
          undefinedKey(key, value);
-      } catch (InvocationTargetException ex) {
-         throw new RuntimeException(ex);
-      } catch (IllegalAccessException ex) {
-         throw new RuntimeException(ex);
+      } else {
+         invokeMethod(table.getMethod(index), value);
       }
    }
 
@@ -147,21 +182,401 @@ public abstract class OptionParser {
       throw new RuntimeException("Undefined key: " + key);
    }
 
+/* Private methods */
+
+   private void invokeMethod(MethodHandle fn, String value) {
+      try {
+         fn.invokeExact(this, value);
+      } catch (RuntimeException ex) {
+         throw ex;
+      } catch (Error ex) {
+         throw ex;
+      } catch (Throwable ex) {
+         throw new RuntimeException(ex);
+      }
+   }
+
+/*
+ * Scans the option string and returns the keys, the values, and the
+ * handles for the key methods, which are null for undefined keys.
+ */
+
+   private static ParsedOptions compileOptions(String str, KeyTable table) {
+      ArrayList<String> keys = new ArrayList<String>();
+      ArrayList<String> values = new ArrayList<String>();
+      ArrayList<MethodHandle> methods = new ArrayList<MethodHandle>();
+      int n = str.length();
+      int p = skipWhitespace(str, 0);
+      while (p < n) {
+         if (str.charAt(p) == '/') p = skipWhitespace(str, p + 1);
+         int end = p;
+         int hash = 0;
+         while (end < n) {
+            char ch = str.charAt(end);
+            if (ch >= WORD_CHARS.length || !WORD_CHARS[ch]) break;
+            hash = 31 * hash + ch;
+            end++;
+         }
+         if (end == p) {
+            throw new RuntimeException("Illegal key in option string: " + str);
+         }
+         int index = table.find(str, p, end, hash);
+         String key = (index == -1) ? str.substring(p, end)
+                                    : table.getKey(index);
+         String value = "";
+         p = skipWhitespace(str, end);
+         if (p < n && str.charAt(p) == ':') {
+            p = skipWhitespace(str, p + 1);
+            char ch = (p < n) ? str.charAt(p) : ' ';
+            if (ch == '"' || ch == '\'') {
+               StringBuilder sb = new StringBuilder();
+               p = scanQuotedString(str, p, sb);
+               value = sb.toString();
+            } else {
+               end = scanWord(str, p);
+               if (end == p) {
+                  String msg = "Illegal key in option string: " + str;
+                  throw new RuntimeException(msg);
+               }
+               value = str.substring(p, end);
+               p = end;
+            }
+            p = skipWhitespace(str, p);
+         }
+         keys.add(key);
+         values.add(value);
+         methods.add((index == -1) ? null : table.getMethod(index));
+      }
+      return new ParsedOptions(keys, values, methods);
+   }
+
+/*
+ * The scanning methods recognize the same tokens as the StreamTokenizer
+ * that this class once used.  A word consists of printable ASCII
+ * characters other than the slash, the colon, and the quotation marks,
+ * and only spaces and tabs count as whitespace.
+ */
+
+   private static int skipWhitespace(String str, int p) {
+      int n = str.length();
+      while (p < n && (str.charAt(p) == ' ' || str.charAt(p) == '\t')) {
+         p++;
+      }
+      return p;
+   }
+
+   private static int scanWord(String str, int p) {
+      int n = str.length();
+      while (p < n) {
+         char ch = str.charAt(p);
+         if (ch >= WORD_CHARS.length || !WORD_CHARS[ch]) break;
+         p++;
+      }
+      return p;
+   }
+
+/*
+ * Reads the quoted string that begins at index p into sb and returns the
+ * index of the character after the closing quotation mark.  A string
+ * without a closing mark ends at the end of the line.  Backslash escapes
+ * are interpreted as they are in Java.
+ */
+
+   private static int scanQuotedString(String str, int p, StringBuilder sb) {
+      int n = str.length();
+      char quote = str.charAt(p++);
+      while (p < n) {
+         char ch = str.charAt(p++);
+         if (ch == quote) return p;
+         if (ch == '\n' || ch == '\r') return p - 1;
+         if (ch == '\\' && p < n) {
+            ch = str.charAt(p++);
+            switch (ch) {
+             case 'a': ch = 0x7; break;
+             case 'b': ch = '\b'; break;
+             case 'f': ch = 0xC; break;
+             case 'n': ch = '\n'; break;
+             case 'r': ch = '\r'; break;
+             case 't': ch = '\t'; break;
+             case 'v': ch = 0xB; break;
+             default:
+               if (ch >= '0' && ch <= '7') {
+                  int code = ch - '0';
+                  int limit = (ch <= '3') ? 2 : 1;
+                  while (limit-- > 0 && p < n && str.charAt(p) >= '0' &&
+                         str.charAt(p) <= '7') {
+                     code = 8 * code + str.charAt(p++) - '0';
+                  }
+                  ch = (char) code;
+               }
+               break;
+            }
+         }
+         sb.append(ch);
+      }
+      return p;
+   }
+
+/*
+ * Returns the table for the public methods whose names are a key
+ * followed by "Key" and whose only parameter is a String.  The methods
+ * are made accessible when the table is built, so that subclasses that
+ * are not public do not need any special code.
+ */
+
+   private static KeyTable createKeyTable(Class<?> c) {
+      ArrayList<String> keys = new ArrayList<String>();
+      ArrayList<MethodHandle> methods = new ArrayList<MethodHandle>();
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      for (Method fn : c.getMethods()) {
+         String name = fn.getName();
+         Class<?>[] types = fn.getParameterTypes();
+         if (name.length() <= KEY_SUFFIX.length()) continue;
+         if (!name.endsWith(KEY_SUFFIX)) continue;
+         if (Modifier.isStatic(fn.getModifiers())) continue;
+         if (types.length != 1 || types[0] != String.class) continue;
+         try {
+            fn.setAccessible(true);
+            methods.add(lookup.unreflect(fn).asType(KEY_METHOD_TYPE));
+         } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+         }
+         keys.add(name.substring(0, name.length() - KEY_SUFFIX.length()));
+      }
+      boolean direct;
+      try {
+         Method fn = c.getMethod("invokeKey", String.class, String.class);
+         direct = fn.getDeclaringClass() == OptionParser.class;
+      } catch (NoSuchMethodException ex) {
+         throw new RuntimeException(ex.toString());
+      }
+      KeyTable table = new KeyTable(keys, methods, direct);
+      optionCacheHits.add(table.getHits());
+      optionCacheMisses.add(table.getMisses());
+      return table;
+   }
+
+   private static boolean[] createWordChars() {
+      boolean[] wordChars = new boolean[128];
+      for (char ch = '!'; ch <= '~'; ch++) {
+         wordChars[ch] = true;
+      }
+      wordChars[':'] = false;
+      wordChars['/'] = false;
+      wordChars['"'] = false;
+      wordChars['\''] = false;
+      return wordChars;
+   }
+
+/*
+ * Returns the total of the counters, which are kept separately for each
+ * class so that threads parsing options do not update a shared counter.
+ */
+
+   private static long sum(ConcurrentLinkedQueue<LongAdder> counters) {
+      long total = 0;
+      for (LongAdder counter : counters) {
+         total += counter.sum();
+      }
+      return total;
+   }
+
+/* Private constants */
+
+   private static final int DEFAULT_OPTION_CACHE_SIZE = 256;
+   private static final String KEY_SUFFIX = "Key";
+   private static final MethodType KEY_METHOD_TYPE =
+      MethodType.methodType(void.class, OptionParser.class, String.class);
+   private static final boolean[] WORD_CHARS = createWordChars();
+
+/* Static variables */
+
+   private static ConcurrentLinkedQueue<LongAdder> optionCacheHits =
+      new ConcurrentLinkedQueue<LongAdder>();
+   private static ConcurrentLinkedQueue<LongAdder> optionCacheMisses =
+      new ConcurrentLinkedQueue<LongAdder>();
+   private static volatile int optionCacheSize = DEFAULT_OPTION_CACHE_SIZE;
+
+   private static ClassValue<KeyTable> keyTables = new ClassValue<KeyTable>() {
+      protected KeyTable computeValue(Class<?> c) {
+         return createKeyTable(c);
+      }
+   };
+
+}
+
+/**
+ * This class maps the keys of an option parser class to the handles for
+ * its key methods.  The keys are stored in an open-addressed hash table
+ * that can be searched using a range of characters in the option string,
+ * so that no string is created for a key that the class defines.  The
+ * table also caches the parsed form of the option strings that the class
+ * has seen recently.
+ */
+
+class KeyTable {
+
+   public KeyTable(ArrayList<String> keyList,
+                   ArrayList<MethodHandle> methodList, boolean direct) {
+      this.direct = direct;
+      int size = 4;
+      while (size < 2 * keyList.size()) {
+         size *= 2;
+      }
+      mask = size - 1;
+      parsedOptions = new LinkedHashMap<String,ParsedOptions>(16, 0.75F, true);
+      hits = new LongAdder();
+      misses = new LongAdder();
+      hashCodes = new int[size];
+      keys = new String[size];
+      methods = new MethodHandle[size];
+      for (int i = 0; i < keyList.size(); i++) {
+         String key = keyList.get(i);
+         int h = spread(key.hashCode()) & mask;
+         while (keys[h] != null) {
+            h = (h + 1) & mask;
+         }
+         hashCodes[h] = key.hashCode();
+         keys[h] = key;
+         methods[h] = methodList.get(i);
+      }
+   }
+
+/*
+ * Returns the index of the key that matches the characters of str
+ * between start and end, or -1 if there is no such key.  The caller
+ * supplies the hash code that String would compute for those characters,
+ * which the parser calculates as it scans the key.
+ */
+
+   public int find(String str, int start, int end, int hashCode) {
+      int len = end - start;
+      int h = spread(hashCode) & mask;
+      while (keys[h] != null) {
+         if (hashCodes[h] == hashCode && matches(keys[h], str, start, len)) {
+            return h;
+         }
+         h = (h + 1) & mask;
+      }
+      return -1;
+   }
+
+/*
+ * Returns the cached result of parsing the option string, or null if the
+ * string has not been parsed recently, and counts the lookup as a hit or
+ * a miss.  The cache keeps the strings in the order in which they were
+ * last used and evicts the oldest when it exceeds its limit.  Each class
+ * has its own cache and lock, which is held only for the lookup.
+ */
+
+   public ParsedOptions getParsedOptions(String str) {
+      ParsedOptions options;
+      synchronized (parsedOptions) {
+         options = parsedOptions.get(str);
+      }
+      if (options == null) {
+         misses.increment();
+      } else {
+         hits.increment();
+      }
+      return options;
+   }
+
+   public void putParsedOptions(String str, ParsedOptions options,
+                                int limit) {
+      synchronized (parsedOptions) {
+         if (limit > 0) parsedOptions.put(str, options);
+         Iterator<ParsedOptions> iterator = parsedOptions.values().iterator();
+         while (parsedOptions.size() > limit) {
+            iterator.next();
+            iterator.remove();
+         }
+      }
+   }
+
+   public LongAdder getHits() {
+      return hits;
+   }
+
+   public LongAdder getMisses() {
+      return misses;
+   }
+
+   public String getKey(int index) {
+      return keys[index];
+   }
+
+   public MethodHandle getMethod(int index) {
+      return methods[index];
+   }
+
+   public boolean isDirect() {
+      return direct;
+   }
+
+   private static boolean matches(String key, String str, int start,
+                                  int len) {
+      if (key.length() != len) return false;
+      for (int i = 0; i < len; i++) {
+         if (key.charAt(i) != str.charAt(start + i)) return false;
+      }
+      return true;
+   }
+
+   private static int spread(int hashCode) {
+      return hashCode ^ (hashCode >>> 16);
+   }
+
+/* Private instance variables */
+
+   private LinkedHashMap<String,ParsedOptions> parsedOptions;
+   private LongAdder hits;
+   private LongAdder misses;
+   private MethodHandle[] methods;
+   private String[] keys;
+   private boolean direct;
+   private int mask;
+   private int[] hashCodes;
+
+}
+
 /**
- * Creates a tokenizer for the specified string.
+ * This class holds the result of parsing an option string, which is the
+ * sequence of keys and values together with the handles for the key
+ * methods.  The object cannot be changed after it is created, so that
+ * it can be applied to any number of parsers at the same time.
  */
 
-   private StreamTokenizer createTokenizer(String str) {
-      StreamTokenizer t = new StreamTokenizer(new StringReader(str));
-      t.resetSyntax();
-      t.wordChars((char) 33, (char) 126);
-      t.ordinaryChar(':');
-      t.ordinaryChar('/');
-      t.quoteChar('"');
-      t.quoteChar('\'');
-      t.whitespaceChars(' ', ' ');
-      t.whitespaceChars('\t', '\t');
-      return t;
+class ParsedOptions {
+
+   public ParsedOptions(ArrayList<String> keyList,
+                        ArrayList<String> valueList,
+                        ArrayList<MethodHandle> methodList) {
+      keys = keyList.toArray(new String[keyList.size()]);
+      values = valueList.toArray(new String[valueList.size()]);
+      methods = methodList.toArray(new MethodHandle[methodList.size()]);
    }
 
+   public int size() {
+      return keys.length;
+   }
+
+   public String getKey(int index) {
+      return keys[index];
+   }
+
+   public String getValue(int index) {
+      return values[index];
+   }
+
+   public MethodHandle getMethod(int index) {
+      return methods[index];
+   }
+
+/* Private instance variables */
+
+   private MethodHandle[] methods;
+   private String[] keys;
+   private String[] values;
+
 }
@@ -110,17 +110,22 @@ public abstract class PPAutoShape extends PPTextShape {
          os.print("<p:sp>");
       }
       os.print("<p:nvSpPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' " +
-               "name='" + getName() + "'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "'/>");
       os.print("<p:cNvSpPr/>");
       os.print("<p:nvPr/>");
       os.print("</p:nvSpPr>");
       os.print("<p:spPr bwMode='auto'>");
       os.print("<a:xfrm>");
       Point2D pt = getInitialLocation();
-      os.print("<a:off " + os.getOffsetTag(pt.getX(), pt.getY()) + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(pt.getX(), pt.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.print("<a:prstGeom prst='" + presetGeometry() + "'>");
       dumpShapeParameters(os);
@@ -136,8 +141,9 @@ public abstract class PPAutoShape extends PPTextShape {
       if (lineColor == null) {
          os.print("<a:ln><a:noFill/></a:ln>");
       } else {
-         os.print("<a:ln w='" + PPUtil.pointsToUnits(getLineWeight()) +
-                  "' cap='flat' cmpd='sng' algn='ctr'>");
+         os.print("<a:ln");
+         os.printAttr("w", PPUtil.pointsToUnits(getLineWeight()));
+         os.print(" cap='flat' cmpd='sng' algn='ctr'>");
          os.print("<a:solidFill>");
          os.print(PPUtil.getColorTag(getLineColor()));
          os.print("</a:solidFill>");
@@ -150,7 +156,7 @@ public abstract class PPAutoShape extends PPTextShape {
       os.print("<a:effectLst/>");
       os.print("</p:spPr>");
       os.print("<p:txBody>");
-      os.print(getBodyTag());
+      dumpBodyTag(os);
       os.print("<a:prstTxWarp prst='textNoShape'>");
       os.print("<a:avLst/>");
       os.print("</a:prstTxWarp>");
@@ -0,0 +1,567 @@
+/*
+ * File: PPContext.java
+ * --------------------
+ * This class encapsulates the state shared by the objects in a show.
+ */
+
+package edu.stanford.cs.pptx;
+
+import edu.stanford.cs.pptx.util.PPCompressedEntry;
+import java.awt.Image;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds the state that is shared by the objects in a slide
+ * show, which consists of the counters that assign identifiers to shapes
+ * and slides and the registry that assigns names to the images used in
+ * pictures.  Each thread has a current context, which is used by the
+ * constructors for shapes, slides, and shows.  Unless a program chooses
+ * otherwise, every thread uses a single context shared by the entire
+ * application.  The registry does not keep images alive: an image that
+ * is no longer used by any picture can be reclaimed by the garbage
+ * collector, and only the images used by the pictures in a show are
+ * written when the show is saved.  Images loaded from files are kept in
+ * a cache whose size is limited by the memory used for their pixels;
+ * an image that has been evicted is loaded again when it is needed.
+ *
+ * <p>A program that builds several shows at the same time can give each
+ * show a context of its own, which keeps the identifiers and images of
+ * the shows separate and avoids any contention between the threads.
+ * The pattern looks like this:</p>
+ *
+ *<pre>
+ *    PPContext.setCurrent(new PPContext());
+ *    try {
+ *       PPShow show = new PPShow();
+ *       . . . create and add the slides . . .
+ *       show.save(filename);
+ *    } finally {
+ *       PPContext.setCurrent(null);
+ *    }
+ *</pre>
+ *
+ * The objects in a show must be created in the same context as the
+ * show itself.
+ */
+
+public class PPContext {
+
+/**
+ * Creates a new context with its own identifiers and image registry.
+ */
+
+   public PPContext() {
+      shapeCounter = new AtomicInteger(0);
+      slideCounter = new AtomicInteger(1);
+      imageCache = new LinkedHashMap<String,Image>(16, 0.75F, true);
+      imageCacheLimit = DEFAULT_IMAGE_CACHE_LIMIT;
+      pendingImages = new HashMap<String,Future<Image>>();
+      imageToNameMap =
+         Collections.synchronizedMap(new WeakHashMap<Image,String>());
+      imageData = Collections.synchronizedMap(
+         new WeakHashMap<Image,byte[]>());
+      imageTypes = Collections.synchronizedMap(
+         new WeakHashMap<Image,String>());
+      mediaEntries = Collections.synchronizedMap(
+         new WeakHashMap<Object,SavedMedia>());
+   }
+
+/**
+ * Returns the context for the current thread.
+ *
+ * @return The current context
+ */
+
+   public static PPContext getCurrent() {
+      PPContext context = currentContext.get();
+      return (context == null) ? SHARED_CONTEXT : context;
+   }
+
+/**
+ * Sets the context for the current thread.  Calling
+ * <code>setCurrent(null)</code> restores the shared context.
+ *
+ * @param context The new context for this thread
+ */
+
+   public static void setCurrent(PPContext context) {
+      if (context == null) {
+         currentContext.remove();
+      } else {
+         currentContext.set(context);
+      }
+   }
+
+/**
+ * Sets the maximum number of bytes used by the decoded pixels of the
+ * images that this context caches.  The most recently used image is kept
+ * even if it is larger than the limit.
+ *
+ * @param bytes The limit on the size of the image cache
+ */
+
+   public void setImageCacheLimit(long bytes) {
+      synchronized (imageCache) {
+         imageCacheLimit = bytes;
+         trimImageCache();
+      }
+   }
+
+/**
+ * Returns the maximum number of bytes used by the cached images.
+ *
+ * @return The limit on the size of the image cache
+ */
+
+   public long getImageCacheLimit() {
+      synchronized (imageCache) {
+         return imageCacheLimit;
+      }
+   }
+
+/**
+ * Returns the number of requests for images that were found in the cache.
+ *
+ * @return The number of cache hits
+ */
+
+   public long getImageCacheHits() {
+      synchronized (imageCache) {
+         return imageCacheHits;
+      }
+   }
+
+/**
+ * Returns the number of requests for images that had to be loaded.
+ *
+ * @return The number of cache misses
+ */
+
+   public long getImageCacheMisses() {
+      synchronized (imageCache) {
+         return imageCacheMisses;
+      }
+   }
+
+/**
+ * Returns the number of images that were evicted from the cache.
+ *
+ * @return The number of evictions
+ */
+
+   public long getImageCacheEvictions() {
+      synchronized (imageCache) {
+         return imageCacheEvictions;
+      }
+   }
+
+/**
+ * Sets the resolution in dots per inch at which pictures created with a
+ * display size decode their images.  A large image is then read using
+ * only every <i>n</i>th pixel in each direction, where <i>n</i> is the
+ * largest step that still leaves enough pixels to show the image at this
+ * resolution, so the full image is never held in memory.  The default
+ * value of zero decodes every image at its full size.
+ *
+ * @param dpi The resolution for decoding images, or 0 for full size
+ */
+
+   public void setDecodeResolution(double dpi) {
+      decodeResolution = dpi;
+   }
+
+/**
+ * Returns the resolution in dots per inch at which pictures created with
+ * a display size decode their images, or zero if images are decoded at
+ * their full size.
+ *
+ * @return The resolution for decoding images
+ */
+
+   public double getDecodeResolution() {
+      return decodeResolution;
+   }
+
+/**
+ * Sets the executor on which <code>prefetchImage</code> reads and decodes
+ * images.  By default, each context uses a small pool of daemon threads
+ * of its own, which keeps the blocking file reads off the common pool
+ * that renders slides and encodes media when a show is saved.  Calling
+ * <code>setImageLoader(null)</code> restores the default pool.
+ *
+ * @param executor The executor for loading images
+ */
+
+   public void setImageLoader(Executor executor) {
+      synchronized (imageCache) {
+         imageLoader = executor;
+      }
+   }
+
+/**
+ * Starts loading the image with the specified path into the image cache
+ * on a background thread, so that a picture created later from the same
+ * path does not have to wait for the image to be read and decoded.  A
+ * picture that needs the image before it is ready waits for the load
+ * that is already in progress.  The image is loaded at its full size,
+ * which serves pictures created with <code>PPPicture(path)</code>.
+ *
+ * @param path The path name of the image file
+ * @return A <code>Future</code> that supplies the loaded image
+ */
+
+   public Future<Image> prefetchImage(String path) {
+      return prefetchImage(path, 0, 0);
+   }
+
+/**
+ * Starts loading the image with the specified path for a picture that is
+ * displayed with the given size in points.  The image is decoded at the
+ * reduced size that <code>PPPicture(path, width, height)</code> uses
+ * under the current decode resolution, so a picture created later with
+ * the same path and size finds the image in the cache and the full image
+ * is never held in memory.
+ *
+ * @param path The path name of the image file
+ * @param width The width of the picture in points
+ * @param height The height of the picture in points
+ * @return A <code>Future</code> that supplies the loaded image
+ */
+
+   public Future<Image> prefetchImage(final String path,
+                                      double width, double height) {
+      final int pixelWidth = getDecodePixels(width);
+      final int pixelHeight = getDecodePixels(height);
+      String key = getCacheKey(path, pixelWidth, pixelHeight);
+      final CompletableFuture<Image> future;
+      synchronized (imageCache) {
+         Image image = imageCache.get(key);
+         if (image != null) return CompletableFuture.completedFuture(image);
+         Future<Image> pending = pendingImages.get(key);
+         if (pending != null) return pending;
+         imageCacheMisses++;
+         future = new CompletableFuture<Image>();
+         pendingImages.put(key, future);
+      }
+      Runnable task = new Runnable() {
+         public void run() {
+            try {
+               loadImage(path, pixelWidth, pixelHeight, future);
+            } catch (RuntimeException ex) {
+               /* Reported through the future */
+            }
+         }
+      };
+      try {
+         getImageLoader().execute(task);
+      } catch (RejectedExecutionException ex) {
+         task.run();
+      }
+      return future;
+   }
+
+/**
+ * Starts loading each of the images with the specified paths, which are
+ * read and decoded concurrently.
+ *
+ * @param paths The path names of the image files
+ * @return A list of <code>Future</code> objects in the order of the paths
+ */
+
+   public ArrayList<Future<Image>> prefetchImages(String... paths) {
+      ArrayList<Future<Image>> futures = new ArrayList<Future<Image>>();
+      for (String path : paths) {
+         futures.add(prefetchImage(path));
+      }
+      return futures;
+   }
+
+/* Protected methods */
+
+   protected int nextShapeId() {
+      return shapeCounter.incrementAndGet();
+   }
+
+   protected int nextSlideId() {
+      return slideCounter.getAndIncrement();
+   }
+
+   protected String getImageName(Image image) {
+      return imageToNameMap.get(image);
+   }
+
+   protected void addImage(String name, Image image) {
+      imageToNameMap.put(image, name);
+   }
+
+/*
+ * Images that were decoded from a file in a format that PowerPoint
+ * understands remember the bytes of the file, which are embedded in
+ * place of a newly encoded copy of the image.
+ */
+
+   protected byte[] getImageData(Image image) {
+      return imageData.get(image);
+   }
+
+   protected void setImageData(Image image, byte[] data) {
+      imageData.put(image, data);
+   }
+
+/*
+ * Images decoded from a PNG, JPEG, or GIF file also remember the format
+ * of the file, which applies even when the image was subsampled and the
+ * bytes of the file can no longer be used.
+ */
+
+   protected String getImageType(Image image) {
+      return imageTypes.get(image);
+   }
+
+   protected void setImageType(Image image, String type) {
+      imageTypes.put(image, type);
+   }
+
+/*
+ * Images loaded from files are cached by path so that pictures using the
+ * same file share the image.  A load in progress is registered as pending
+ * whether it runs in the background or in the caller, so every other
+ * thread that needs the same image waits for it instead of decoding the
+ * file again.  Pictures created from a path do not keep
+ * their images, so the cache determines how much memory the images use.
+ * When the decoded pixels exceed the limit, the least recently used
+ * images are evicted and are loaded again if they are needed later.
+ * An image decoded at a reduced size is cached separately from the full
+ * image, under a key that includes the size.  A width and height of zero
+ * request the full image.
+ */
+
+   protected Image getImage(String path) {
+      return getImage(path, 0, 0);
+   }
+
+   protected Image getImage(String path, int width, int height) {
+      String key = getCacheKey(path, width, height);
+      CompletableFuture<Image> future = null;
+      Future<Image> pending;
+      synchronized (imageCache) {
+         Image image = imageCache.get(key);
+         if (image != null) {
+            imageCacheHits++;
+            return image;
+         }
+         pending = pendingImages.get(key);
+         if (pending == null) {
+            imageCacheMisses++;
+            future = new CompletableFuture<Image>();
+            pendingImages.put(key, future);
+         } else {
+            imageCacheHits++;
+         }
+      }
+      if (future != null) return loadImage(path, width, height, future);
+      try {
+         return pending.get();
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(ex.toString());
+      } catch (ExecutionException ex) {
+         Throwable cause = ex.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         throw new RuntimeException(cause.toString());
+      }
+   }
+
+/*
+ * The encoded media part for a picture is kept as long as its media key
+ * is in use, so that saving a show incrementally does not encode it
+ * again.  The key is the image for pictures that hold their image and
+ * the cache key for pictures created from a path, so a part survives
+ * the eviction of the image from the cache.  The part is reused only if
+ * the image is saved at the same size.
+ */
+
+   protected PPCompressedEntry getMediaEntry(Object key,
+                                             int width, int height) {
+      SavedMedia saved = mediaEntries.get(key);
+      if (saved == null) return null;
+      if (saved.width != width || saved.height != height) return null;
+      return saved.entry;
+   }
+
+   protected void setMediaEntry(Object key, int width, int height,
+                                PPCompressedEntry entry) {
+      SavedMedia saved = new SavedMedia();
+      saved.entry = entry;
+      saved.width = width;
+      saved.height = height;
+      mediaEntries.put(key, saved);
+   }
+
+/*
+ * Returns the number of pixels at which an image displayed with the
+ * specified number of points is decoded, or zero if the context decodes
+ * images at their full size.
+ */
+
+   protected int getDecodePixels(double points) {
+      if (decodeResolution <= 0) return 0;
+      return (int) Math.ceil(points * decodeResolution / POINTS_PER_INCH);
+   }
+
+/*
+ * Returns the key under which the image cache stores the image for the
+ * path decoded at the specified size.
+ */
+
+   protected static String getCacheKey(String path, int width, int height) {
+      if (width <= 0 || height <= 0) return path;
+      return path + "@" + width + "x" + height;
+   }
+
+/* Private methods */
+
+/*
+ * Loads the image, stores it in the cache, and completes the future that
+ * was registered as pending for it.  A failure is passed to the threads
+ * waiting on the future as well as to the caller.
+ */
+
+   private Image loadImage(String path, int width, int height,
+                           CompletableFuture<Image> future) {
+      String key = getCacheKey(path, width, height);
+      Image image = null;
+      try {
+         image = PPPicture.loadImage(path, width, height, this);
+         addImage(path, image);
+      } catch (RuntimeException ex) {
+         future.completeExceptionally(ex);
+         throw ex;
+      } finally {
+         synchronized (imageCache) {
+            pendingImages.remove(key);
+            if (image != null) {
+               Image previous = imageCache.put(key, image);
+               if (previous != null) {
+                  imageCacheSize -= getImageSize(previous);
+               }
+               imageCacheSize += getImageSize(image);
+               trimImageCache();
+            }
+         }
+      }
+      future.complete(image);
+      return image;
+   }
+
+/*
+ * Returns the executor for prefetching images, creating the default pool
+ * if the program has not supplied one.  The threads of the default pool
+ * exit when they have been idle for a while, so a context that is no
+ * longer used does not keep them alive.
+ */
+
+   private Executor getImageLoader() {
+      synchronized (imageCache) {
+         if (imageLoader == null) {
+            ThreadFactory factory = new ThreadFactory() {
+               public Thread newThread(Runnable r) {
+                  Thread thread = new Thread(r, "PPContext image loader");
+                  thread.setDaemon(true);
+                  return thread;
+               }
+            };
+            ThreadPoolExecutor pool =
+               new ThreadPoolExecutor(LOADER_THREADS, LOADER_THREADS,
+                                      LOADER_KEEP_ALIVE, TimeUnit.SECONDS,
+                                      new LinkedBlockingQueue<Runnable>(),
+                                      factory);
+            pool.allowCoreThreadTimeOut(true);
+            imageLoader = pool;
+         }
+         return imageLoader;
+      }
+   }
+
+/*
+ * Evicts the least recently used images until the cache fits within its
+ * limit.  The caller must hold the lock on the cache.
+ */
+
+   private void trimImageCache() {
+      Iterator<Image> iterator = imageCache.values().iterator();
+      while (imageCacheSize > imageCacheLimit && imageCache.size() > 1) {
+         imageCacheSize -= getImageSize(iterator.next());
+         iterator.remove();
+         imageCacheEvictions++;
+      }
+   }
+
+
+   private static long getImageSize(Image image) {
+      return 4L * Math.max(0, image.getWidth(null)) *
+                  Math.max(0, image.getHeight(null));
+   }
+
+/* Private constants */
+
+   private static final long DEFAULT_IMAGE_CACHE_LIMIT = 64L << 20;
+   private static final double POINTS_PER_INCH = 72;
+   private static final int LOADER_THREADS = 4;
+   private static final long LOADER_KEEP_ALIVE = 30;
+
+   private static final PPContext SHARED_CONTEXT = new PPContext();
+
+/* Private instance variables */
+
+   private AtomicInteger shapeCounter;
+   private AtomicInteger slideCounter;
+   private Executor imageLoader;
+   private HashMap<String,Future<Image>> pendingImages;
+   private LinkedHashMap<String,Image> imageCache;
+   private Map<Object,SavedMedia> mediaEntries;
+   private Map<Image,byte[]> imageData;
+   private Map<Image,String> imageToNameMap;
+   private Map<Image,String> imageTypes;
+   private double decodeResolution;
+   private long imageCacheEvictions;
+   private long imageCacheHits;
+   private long imageCacheLimit;
+   private long imageCacheMisses;
+   private long imageCacheSize;
+
+/* Static variables */
+
+   private static ThreadLocal<PPContext> currentContext =
+      new ThreadLocal<PPContext>();
+
+}
+
+/**
+ * This class records the media part for an image together with the size
+ * at which the image was encoded.
+ */
+
+class SavedMedia {
+   PPCompressedEntry entry;
+   int width;
+   int height;
+}
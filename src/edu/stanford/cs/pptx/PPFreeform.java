@@ -69,17 +69,22 @@ public class PPFreeform extends PPSimpleShape {
    protected void dumpShape(PPOutputStream os) {
       os.print("<p:sp>");
       os.print("<p:nvSpPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' " +
-               "name='" + getName() + "'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "'/>");
       os.print("<p:cNvSpPr/>");
       os.print("<p:nvPr/>");
       os.print("</p:nvSpPr>");
       os.print("<p:spPr bwMode='auto'>");
       Rectangle2D bb = path.getBounds();
       os.print("<a:xfrm>");
-      os.print("<a:off " + os.getOffsetTag(bb.getX(), bb.getY()) + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(bb.getWidth()) +
-               "' cy='" + PPUtil.pointsToUnits(bb.getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(bb.getX(), bb.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(bb.getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(bb.getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.adjustOffset(-bb.getX(), -bb.getY());
       os.print("<a:custGeom>");
@@ -88,7 +93,9 @@ public class PPFreeform extends PPSimpleShape {
       os.adjustOffset(bb.getX(), bb.getY());
       Color color = getLineColor();
       os.print("<a:noFill/>");
-      os.print("<a:ln w='" + PPUtil.pointsToUnits(getLineWeight()) + "'>");
+      os.print("<a:ln");
+      os.printAttr("w", PPUtil.pointsToUnits(getLineWeight()));
+      os.print(">");
       os.print("<a:solidFill>");
       if (color == null) {
          os.print("<a:schemeClr val='tx1'/>");
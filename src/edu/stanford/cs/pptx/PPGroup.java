@@ -51,8 +51,10 @@ public class PPGroup extends PPShape {
  */
 
    public void add(PPShape shape) {
+      shape.setGroup(this);
       contents.add(shape);
       bounds.add(shape.getBounds());
+      markDirty();
    }
 
 /**
@@ -79,6 +81,7 @@ public class PPGroup extends PPShape {
    public void sendToFront(PPShape shape) {
       contents.remove(shape);
       contents.add(shape);
+      markDirty();
    }
 
 /**
@@ -90,6 +93,7 @@ public class PPGroup extends PPShape {
    public void sendToBack(PPShape shape) {
       contents.remove(shape);
       contents.add(0, shape);
+      markDirty();
    }
 
 /**
@@ -116,6 +120,7 @@ public class PPGroup extends PPShape {
          my = Math.min(my, shape.getY());
       }
       this.bounds = bounds;
+      markDirty();
    }
 
 /**
@@ -135,23 +140,32 @@ public class PPGroup extends PPShape {
    protected void dumpShape(PPOutputStream os) {
       os.print("<p:grpSp>");
       os.print("<p:nvGrpSpPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' " +
-               "name='" + getName() + "'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "'/>");
       os.print("<p:cNvGrpSpPr/>");
       os.print("<p:nvPr/>");
       os.print("</p:nvGrpSpPr>");
       os.print("<p:grpSpPr>");
       Point2D pt = getInitialLocation();
       Rectangle2D bb = getGroupBounds();
-      String offsetTag = os.getOffsetTag(pt.getX() + bb.getX(),
-                                         pt.getY() + bb.getY());
+      double x = pt.getX() + bb.getX();
+      double y = pt.getY() + bb.getY();
       os.print("<a:xfrm>");
-      os.print("<a:off " + offsetTag + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(bb.getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(bb.getHeight()) + "'/>");
-      os.print("<a:chOff " + offsetTag + "/>");
-      os.print("<a:chExt cx='" + PPUtil.pointsToUnits(bb.getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(bb.getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(x, y);
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(bb.getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(bb.getHeight()));
+      os.print("/>");
+      os.print("<a:chOff");
+      os.printOffset(x, y);
+      os.print("/>");
+      os.print("<a:chExt");
+      os.printAttr("cx", PPUtil.pointsToUnits(bb.getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(bb.getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.print("</p:grpSpPr>");
       Point2D start = getInitialLocation();
@@ -170,6 +184,13 @@ public class PPGroup extends PPShape {
       }
    }
 
+   @Override
+   protected void collectPictures(ArrayList<PPPicture> pictures) {
+      for (PPShape shape : contents) {
+         shape.collectPictures(pictures);
+      }
+   }
+
 /* Private methods */
 
    private Rectangle2D getGroupBounds() {
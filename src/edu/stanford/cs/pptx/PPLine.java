@@ -123,8 +123,9 @@ public class PPLine extends PPSimpleShape {
    protected void dumpShape(PPOutputStream os) {
       os.print("<p:sp>");
       os.print("<p:nvSpPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' " +
-               "name='" + getName() + "'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "'/>");
       os.print("<p:cNvSpPr>");
       os.print("<a:spLocks noChangeShapeType='1'/>");
       os.print("</p:cNvSpPr>");
@@ -138,16 +139,22 @@ public class PPLine extends PPSimpleShape {
        case 4: os.print("<a:xfrm>"); break;
       }
       Point2D pt = getInitialLocation();
-      os.print("<a:off " + os.getOffsetTag(pt.getX(), pt.getY()) + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(pt.getX(), pt.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.print("<a:prstGeom prst='line'>");
       os.print("<a:avLst/>");
       os.print("</a:prstGeom>");
       Color color = getLineColor();
       os.print("<a:noFill/>");
-      os.print("<a:ln w='" + PPUtil.pointsToUnits(getLineWeight()) + "'>");
+      os.print("<a:ln");
+      os.printAttr("w", PPUtil.pointsToUnits(getLineWeight()));
+      os.print(">");
       os.print("<a:solidFill>");
       if (color == null) {
          os.print("<a:schemeClr val='tx1'/>");
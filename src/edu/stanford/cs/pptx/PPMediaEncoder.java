@@ -0,0 +1,205 @@
+/*
+ * File: PPMediaEncoder.java
+ * -------------------------
+ * This package class encodes the images used by the pictures in a show
+ * so that they can be stored as media parts in a .pptx file.
+ */
+
+package edu.stanford.cs.pptx;
+
+import edu.stanford.cs.pptx.util.PPCompressedEntry;
+import java.awt.Dimension;
+import java.awt.geom.Dimension2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+class PPMediaEncoder {
+
+   public PPMediaEncoder(boolean reuse) {
+      this.reuse = reuse;
+      nThreads = 1;
+      memoryLimit = Long.MAX_VALUE;
+      resolution = 0;
+   }
+
+/*
+ * Sets the resolution in dots per inch at which images are stored.  An
+ * image that has more pixels than it needs to appear at that resolution
+ * in its largest picture is resampled to the smaller size.  A resolution
+ * of zero stores every image at its full size.
+ */
+
+   public void setResolution(double resolution) {
+      this.resolution = resolution;
+   }
+
+/*
+ * Sets the number of images that are encoded at the same time.  Values
+ * greater than one encode the images on the common pool.
+ */
+
+   public void setThreads(int nThreads) {
+      this.nThreads = Math.max(1, nThreads);
+   }
+
+/*
+ * Sets the number of bytes that the images being encoded at the same
+ * time may use for their pixels.  An image that exceeds the limit on its
+ * own is still encoded, but no other image is encoded alongside it.
+ */
+
+   public void setMemoryLimit(long memoryLimit) {
+      this.memoryLimit = memoryLimit;
+   }
+
+/*
+ * Encodes the images for the pictures and adds the parts to the media
+ * map.  Pictures that share a media key are encoded only once, at the
+ * size needed by the largest of them.  Each image is obtained only when
+ * it is encoded and is released as soon as its part exists, so the
+ * images held at any one time are those being encoded, which the thread
+ * count and memory limit bound.  The results are assigned in the order
+ * of the pictures, so the contents of the package do not depend on the
+ * number of threads.
+ */
+
+   public void addMedia(ArrayList<PPPicture> pictures,
+                        Map<String,PPCompressedEntry> media) {
+      HashMap<Object,Dimension> sizes = new HashMap<Object,Dimension>();
+      ArrayList<PPPicture> sources = new ArrayList<PPPicture>();
+      for (PPPicture picture : pictures) {
+         Object key = picture.getMediaKey();
+         Dimension size = sizes.get(key);
+         if (size == null) {
+            size = new Dimension(0, 0);
+            sizes.put(key, size);
+            sources.add(picture);
+         }
+         size.width = Math.max(size.width, getPixels(picture.getWidth()));
+         size.height = Math.max(size.height, getPixels(picture.getHeight()));
+      }
+      for (PPPicture source : sources) {
+         Dimension size = sizes.get(source.getMediaKey());
+         Dimension2D full = source.getDefaultSize();
+         if (resolution > 0) {
+            size.width = Math.min(size.width, (int) full.getWidth());
+            size.height = Math.min(size.height, (int) full.getHeight());
+         } else {
+            size.setSize(full);
+         }
+      }
+      ArrayList<PPCompressedEntry> entries;
+      if (nThreads > 1 && sources.size() > 1) {
+         entries = encodeInParallel(sources, sizes);
+      } else {
+         entries = new ArrayList<PPCompressedEntry>();
+         for (PPPicture source : sources) {
+            Dimension size = sizes.get(source.getMediaKey());
+            entries.add(source.encodeImage(reuse, size.width, size.height));
+         }
+      }
+      HashMap<Object,PPCompressedEntry> encoded =
+         new HashMap<Object,PPCompressedEntry>();
+      for (int i = 0; i < sources.size(); i++) {
+         encoded.put(sources.get(i).getMediaKey(), entries.get(i));
+      }
+      for (PPPicture picture : pictures) {
+         PPCompressedEntry entry = encoded.get(picture.getMediaKey());
+         picture.setMediaEntry(entry);
+         if (!media.containsKey(entry.getName())) {
+            media.put(entry.getName(), entry);
+         }
+      }
+   }
+
+/* Private methods */
+
+/*
+ * Submits the pictures to the common pool, waiting for the oldest task
+ * to finish whenever the number of tasks or the memory for their pixels
+ * would exceed the limits.  The memory for each task is estimated from
+ * the default size of the picture, since its image is obtained only
+ * when the task runs.
+ */
+
+   private ArrayList<PPCompressedEntry>
+           encodeInParallel(ArrayList<PPPicture> sources,
+                            HashMap<Object,Dimension> sizes) {
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      ArrayList<PPCompressedEntry> entries =
+         new ArrayList<PPCompressedEntry>();
+      ArrayDeque<Future<PPCompressedEntry>> pending =
+         new ArrayDeque<Future<PPCompressedEntry>>();
+      ArrayDeque<Long> reservations = new ArrayDeque<Long>();
+      long reserved = 0;
+      try {
+         for (final PPPicture picture : sources) {
+            final Dimension target = sizes.get(picture.getMediaKey());
+            long memory = getPixelMemory(picture.getDefaultSize());
+            while (!pending.isEmpty() &&
+                   (pending.size() >= nThreads ||
+                    reserved + memory > memoryLimit)) {
+               entries.add(pending.removeFirst().get());
+               reserved -= reservations.removeFirst();
+            }
+            pending.addLast(pool.submit(new Callable<PPCompressedEntry>() {
+               public PPCompressedEntry call() {
+                  return picture.encodeImage(reuse, target.width,
+                                             target.height);
+               }
+            }));
+            reservations.addLast(memory);
+            reserved += memory;
+         }
+         while (!pending.isEmpty()) {
+            entries.add(pending.removeFirst().get());
+         }
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(ex.toString());
+      } catch (ExecutionException ex) {
+         Throwable cause = ex.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         }
+         throw new RuntimeException(cause.toString());
+      } finally {
+         for (Future<PPCompressedEntry> future : pending) {
+            future.cancel(false);
+         }
+      }
+      return entries;
+   }
+
+/*
+ * Returns the number of pixels needed to show the specified number of
+ * points at the current resolution.
+ */
+
+   private int getPixels(double points) {
+      return Math.max(1, (int) Math.ceil(points * resolution /
+                                         POINTS_PER_INCH));
+   }
+
+   private static long getPixelMemory(Dimension2D size) {
+      return 4L * (long) size.getWidth() * (long) size.getHeight();
+   }
+
+/* Private constants */
+
+   private static final double POINTS_PER_INCH = 72;
+
+/* Private instance variables */
+
+   private boolean reuse;
+   private double resolution;
+   private int nThreads;
+   private long memoryLimit;
+
+}
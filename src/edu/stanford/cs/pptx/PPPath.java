@@ -129,8 +129,10 @@ public class PPPath {
    protected void dumpPath(PPOutputStream os) {
       Rectangle2D bb = getBounds();
       os.print("<a:pathLst>");
-      os.print("<a:path w='" + PPUtil.pointsToUnits(bb.getWidth()) +
-               "' h='" + PPUtil.pointsToUnits(bb.getHeight()) + "'>");
+      os.print("<a:path");
+      os.printAttr("w", PPUtil.pointsToUnits(bb.getWidth()));
+      os.printAttr("h", PPUtil.pointsToUnits(bb.getHeight()));
+      os.print(">");
       for (PathElement element : elements) {
          element.dumpElement(os);
       }
@@ -168,7 +170,9 @@ class MoveToElement extends PathElement {
    @Override
    public void dumpElement(PPOutputStream os) {
       os.print("<a:moveTo>");
-      os.print("<a:pt " + os.getOffsetTag(x, y) + "/>");
+      os.print("<a:pt");
+      os.printOffset(x, y);
+      os.print("/>");
       os.print("</a:moveTo>");
    }
 
@@ -194,7 +198,9 @@ class LineToElement extends PathElement {
    @Override
    public void dumpElement(PPOutputStream os) {
       os.print("<a:lnTo>");
-      os.print("<a:pt " + os.getOffsetTag(x, y) + "/>");
+      os.print("<a:pt");
+      os.printOffset(x, y);
+      os.print("/>");
       os.print("</a:lnTo>");
    }
 
@@ -221,10 +227,12 @@ class ArcToElement extends PathElement {
 
    @Override
    public void dumpElement(PPOutputStream os) {
-      os.print("<a:arcTo wR='" + PPUtil.pointsToUnits(rx) +
-               "' hR='" + PPUtil.pointsToUnits(ry) +
-               "' stAng='" + Math.round(-60000 * start) +
-               "' swAng='" + Math.round(-60000 * sweep) + "'/>");
+      os.print("<a:arcTo");
+      os.printAttr("wR", PPUtil.pointsToUnits(rx));
+      os.printAttr("hR", PPUtil.pointsToUnits(ry));
+      os.printAttr("stAng", (int) Math.round(-60000 * start));
+      os.printAttr("swAng", (int) Math.round(-60000 * sweep));
+      os.print("/>");
    }
 
 /* Private instance variables */
@@ -259,9 +267,15 @@ class CurveToElement extends PathElement {
    @Override
    public void dumpElement(PPOutputStream os) {
       os.print("<a:cubicBezTo>");
-      os.print("<a:pt " + os.getOffsetTag(x1, y1) + "/>");
-      os.print("<a:pt " + os.getOffsetTag(x2, y2) + "/>");
-      os.print("<a:pt " + os.getOffsetTag(x3, y3) + "/>");
+      os.print("<a:pt");
+      os.printOffset(x1, y1);
+      os.print("/>");
+      os.print("<a:pt");
+      os.printOffset(x2, y2);
+      os.print("/>");
+      os.print("<a:pt");
+      os.printOffset(x3, y3);
+      os.print("/>");
       os.print("</a:cubicBezTo>");
    }
 
@@ -6,27 +6,43 @@
 
 package edu.stanford.cs.pptx;
 
+import edu.stanford.cs.pptx.util.PPCompressedEntry;
 import edu.stanford.cs.pptx.util.PPOutputStream;
+import edu.stanford.cs.pptx.util.PPPngEncoder;
 import edu.stanford.cs.pptx.util.PPUtil;
 import java.awt.AlphaComposite;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.MediaTracker;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.geom.Dimension2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.awt.image.ImageProducer;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
-import java.util.HashMap;
-import java.util.zip.ZipEntry;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.xml.bind.DatatypeConverter;
 
@@ -55,26 +71,53 @@ public class PPPicture extends PPSimpleShape {
  */
 
    public PPPicture() {
+      context = PPContext.getCurrent();
       image = null;
    }
 
 /**
  * Creates a new <code>PPPicture</code> shape from the image stored in
- * the file with the specified path.
+ * the file with the specified path.  The image is held in the image
+ * cache of the current context rather than by the picture, so it may be
+ * loaded again from the path when the show is saved.
  *
  * @param path The path name of the image file
  */
 
    public PPPicture(String path) {
+      context = PPContext.getCurrent();
       this.path = path;
-      image = nameToImageMap.get(path);
-      if (image == null) {
-         image = loadImage(path);
-         nameToImageMap.put(path, image);
-         imageToNameMap.put(image, path);
-      }
+      cached = true;
+      cacheKey = PPContext.getCacheKey(path, 0, 0);
+      setName(path.substring(path.lastIndexOf("/") + 1));
+      initPicture(context.getImage(path));
+   }
+
+/**
+ * Creates a new <code>PPPicture</code> shape from the image stored in
+ * the file with the specified path, which is displayed with the given
+ * size in points.  If the current context has a decode resolution, an
+ * image with more pixels than it needs at that size is decoded by
+ * subsampling the file, so that the full image is never held in memory.
+ * An image that is decoded in this way is saved in the format of the
+ * file but at the reduced size.
+ *
+ * @param path The path name of the image file
+ * @param width The width of the picture in points
+ * @param height The height of the picture in points
+ */
+
+   public PPPicture(String path, double width, double height) {
+      context = PPContext.getCurrent();
+      this.path = path;
+      cached = true;
+      decodeWidth = context.getDecodePixels(width);
+      decodeHeight = context.getDecodePixels(height);
+      cacheKey = PPContext.getCacheKey(path, decodeWidth, decodeHeight);
       setName(path.substring(path.lastIndexOf("/") + 1));
-      initPicture();
+      initPicture(getImage());
+      Point2D pt = getInitialLocation();
+      setBounds(pt.getX(), pt.getY(), width, height);
    }
 
 /**
@@ -84,14 +127,14 @@ public class PPPicture extends PPSimpleShape {
  */
 
    public PPPicture(Image image) {
+      context = PPContext.getCurrent();
       this.image = image;
-      path = imageToNameMap.get(image);
+      path = context.getImageName(image);
       if (path == null) {
          path = "image" + getShapeId() + ".png";
-         nameToImageMap.put(path, image);
-         imageToNameMap.put(image, path);
+         context.addImage(path, image);
       }
-      initPicture();
+      initPicture(image);
    }
 
 /**
@@ -103,19 +146,23 @@ public class PPPicture extends PPSimpleShape {
    public void setImage(Image image) {
       this.image = image;
       path = "image" + getShapeId() + ".png";
-      nameToImageMap.put(path, image);
-      imageToNameMap.put(image, path);
-      initPicture();
+      cached = false;
+      context.addImage(path, image);
+      initPicture(image);
+      markDirty();
    }
 
 /**
- * Returns the stored image.
+ * Returns the stored image.  For a picture created from a path, the
+ * image comes from the image cache and is loaded again if it has been
+ * evicted.
  *
  * @return The image
  */
 
    public Image getImage() {
-      return image;
+      if (!cached) return image;
+      return context.getImage(path, decodeWidth, decodeHeight);
    }
 
 /**
@@ -158,58 +205,90 @@ public class PPPicture extends PPSimpleShape {
  *
  * Unlike the <code>getImage</code> method in the <code>Applet</code> class,
  * <code>loadImage</code> waits for an image to be fully loaded before
- * returning.
+ * returning.  Images are decoded using ImageIO, which does not require
+ * the AWT toolkit; the toolkit is used only for data that ImageIO cannot
+ * decode.  If the image is stored in PNG, JPEG, or GIF format, the
+ * contents of the file are embedded unchanged when the image is saved.
  *
  * @param path The path name of a file containing the image
  * @return A fully loaded <code>Image</code> object
  */
 
    public static Image loadImage(String path) {
+      return loadImage(path, PPContext.getCurrent());
+   }
+
+/* Protected methods */
+
+/*
+ * Loads an image as described for loadImage, recording the contents of
+ * the file in the specified context.
+ */
+
+   protected static Image loadImage(String path, PPContext context) {
+      return loadImage(path, 0, 0, context);
+   }
+
+/*
+ * Loads an image that needs at least the specified number of pixels in
+ * each dimension, or the full image if the width and height are zero.
+ * A larger image is subsampled as it is decoded, in which case only the
+ * format of the file is recorded, since its contents no longer match the
+ * decoded image.
+ */
+
+   protected static Image loadImage(String path, int width, int height,
+                                    PPContext context) {
       Image image = null;
-      Toolkit toolkit = Toolkit.getDefaultToolkit();
-      if (path.startsWith("data:")) {
-         image = readDataImage(path);
-      } else if (path.startsWith("http:")) {
-         try {
+      byte[] data = null;
+      try {
+         if (path.startsWith("data:")) {
+            data = readDataURL(path);
+         } else if (path.startsWith("http:")) {
             URL url = new URL(path);
             URLConnection connection = url.openConnection();
             if (isResource(url) || connection.getContentLength() > 0) {
-               Object content = connection.getContent();
-               if (content instanceof ImageProducer) {
-                  image = toolkit.createImage((ImageProducer) content);
-               } else if (content != null) {
-                  image = toolkit.getImage(url);
-               }
+               data = readBytes(connection.getInputStream());
             }
-         } catch (MalformedURLException ex) {
-            throw new RuntimeException("loadImage: Malformed URL");
-         } catch (IOException ex) {
-            /* Empty */
+         } else if (new File(path).isFile()) {
+            data = Files.readAllBytes(new File(path).toPath());
+         }
+      } catch (MalformedURLException ex) {
+         throw new RuntimeException("loadImage: Malformed URL");
+      } catch (IOException ex) {
+         /* Empty */
+      }
+      if (data != null && data.length > 0) {
+         int step = getSubsampling(data, width, height);
+         image = decodeImage(data, step);
+         if (image == null) {
+            Toolkit toolkit = Toolkit.getDefaultToolkit();
+            image = waitForImage(toolkit.createImage(data));
+            step = 1;
+         }
+         String type = getImageType(data);
+         if (type != null) {
+            context.setImageType(image, type);
+            if (step == 1) context.setImageData(image, data);
          }
       }
-      if (image == null) image = toolkit.getImage(path);
       if (image == null) {
-         throw new RuntimeException("Cannot find an image named " + path);
+         image = waitForImage(Toolkit.getDefaultToolkit().getImage(path));
       }
-      MediaTracker tracker = new MediaTracker(PPUtil.getEmptyContainer());
-      tracker.addImage(image, 0);
-      try {
-         tracker.waitForID(0);
-      } catch (InterruptedException ex) {
-         throw new RuntimeException("Image loading process interrupted");
+      if (image == null) {
+         throw new RuntimeException("Cannot find an image named " + path);
       }
       return image;
    }
 
-/* Protected methods */
-
    @Override
    protected void dumpShape(PPOutputStream os) {
       String shortName = path.substring(path.lastIndexOf("/") + 1);
       os.print("<p:pic>");
       os.print("<p:nvPicPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' " +
-               "name='" + getName() + "' descr='" + shortName + "'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "' descr='" + shortName + "'/>");
       os.print("<p:cNvPicPr>");
       os.print("<a:picLocks noChangeAspect='1'/>");
       os.print("</p:cNvPicPr>");
@@ -224,9 +303,13 @@ public class PPPicture extends PPSimpleShape {
       os.print("<p:spPr>");
       os.print("<a:xfrm>");
       Point2D pt = getInitialLocation();
-      os.print("<a:off " + os.getOffsetTag(pt.getX(), pt.getY()) + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(pt.getX(), pt.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.print("<a:prstGeom prst='rect'>");
       os.print("<a:avLst/>");
@@ -237,47 +320,125 @@ public class PPPicture extends PPSimpleShape {
 
    @Override
    protected void dumpShapeRels(PPOutputStream os) {
-      String shortName = path.substring(path.lastIndexOf("/") + 1);
+      String name = mediaEntry.getName();
       os.print("<Relationship Id='rId" + (100 + getShapeId()) + "' ");
       os.print("Type='http://schemas.openxmlformats.org/" +
                "officeDocument/2006/relationships/image' ");
-      os.print("Target='../media/" + shortName + "'/>");
+      os.print("Target='../media/" + name.substring(MEDIA_PREFIX.length()));
+      os.print("'/>");
+   }
+
+   @Override
+   protected void collectPictures(ArrayList<PPPicture> pictures) {
+      if (image != null || cached) pictures.add(this);
    }
 
-   protected static void dumpImages(PPOutputStream os) throws IOException {
-      for (String path : nameToImageMap.keySet()) {
-         Image image = nameToImageMap.get(path);
-         String name = path.substring(path.lastIndexOf("/") + 1);
-         os.putNextEntry(new ZipEntry("ppt/media/" + name));
-         os.write(convertToPNG(image));
-         os.closeEntry();
+/*
+ * Returns the key under which the media part for this picture is shared
+ * with other pictures, which is the image itself for a picture that
+ * holds its image and the image cache key for a picture created from a
+ * path.  Pictures with the same key have the same image, even if the
+ * cache has loaded it again in the meantime.
+ */
+
+   protected Object getMediaKey() {
+      return (cached) ? cacheKey : image;
+   }
+
+/*
+ * Encodes the image for this picture as a media part with the specified
+ * size in pixels, which is never larger than the image.  The image is
+ * obtained from getImage only if the part is not already available, and
+ * the reference is dropped as soon as the part has been created.  Images
+ * read from PNG, JPEG, or GIF files are embedded using the bytes of the
+ * original file unless they must be resampled or were subsampled when
+ * they were decoded, in which case JPEG images remain JPEG and all
+ * others are encoded as PNG.  The name of the part is derived from a
+ * hash of the encoded bytes, so that every picture with the same content
+ * refers to a single part, however the image was obtained.  This method
+ * may be called from any thread.
+ */
+
+   protected PPCompressedEntry encodeImage(boolean reuse,
+                                           int width, int height) {
+      Object key = getMediaKey();
+      PPCompressedEntry entry = null;
+      if (reuse) entry = context.getMediaEntry(key, width, height);
+      if (entry == null) {
+         Image image = getImage();
+         byte[] data = context.getImageData(image);
+         if (data == null || width < image.getWidth(null) ||
+                             height < image.getHeight(null)) {
+            boolean jpeg = "jpeg".equals(context.getImageType(image));
+            data = convertImage(image, width, height,
+                                (jpeg) ? "jpeg" : "png");
+         }
+         entry = PPCompressedEntry.compress(MEDIA_PREFIX + "image-" +
+                                            getDigest(data) + "." +
+                                            getImageType(data), data);
+         if (reuse) context.setMediaEntry(key, width, height, entry);
+      }
+      return entry;
+   }
+
+/*
+ * Records the media part for this picture, which must be set before the
+ * relationship written by dumpShapeRels can name it.
+ */
+
+   protected void setMediaEntry(PPCompressedEntry entry) {
+      mediaEntry = entry;
+   }
+
+   protected String getMediaName() {
+      return (mediaEntry == null) ? null : mediaEntry.getName();
+   }
+
+   protected static void dumpImages(PPOutputStream os,
+                                    Map<String,PPCompressedEntry> media)
+                    throws IOException {
+      for (PPCompressedEntry entry : media.values()) {
+         os.writeEntry(entry);
       }
    }
 
 /* Private methods */
 
-   private void initPicture() {
+   private void initPicture(Image image) {
       defaultSize = new Dimension(image.getWidth(null), image.getHeight(null));
       Point2D pt = getInitialLocation();
       setBounds(pt.getX(), pt.getY(),
                 defaultSize.getWidth(), defaultSize.getHeight());
    }
 
-   private static byte[] convertToPNG(Image image) {
+   private static byte[] convertImage(Image image, int width, int height,
+                                      String format) {
       ByteArrayOutputStream out = new ByteArrayOutputStream();
-      int width = image.getWidth(null);
-      int height = image.getHeight(null);
-      BufferedImage bi = new BufferedImage(width, height,
-                                           BufferedImage.TYPE_INT_ARGB);
-      Graphics2D g = bi.createGraphics();
-      g.setComposite(AlphaComposite.Src);
-      g.drawImage(image, 0, 0, null);
-      g.dispose();
+      boolean jpeg = format.equals("jpeg");
+      int type = (jpeg) ? BufferedImage.TYPE_INT_RGB
+                        : BufferedImage.TYPE_INT_ARGB;
+      BufferedImage bi = resample(image, width, height, type);
+      if (!jpeg) {
+         byte[] data = PPPngEncoder.encode(bi);
+         if (data != null) return data;
+      }
       ImageOutputStream ios = new MemoryCacheImageOutputStream(out);
       try {
-         if (!ImageIO.write(bi, "PNG", ios)) {
-            throw new IOException("ImageIO.write failed");
+         Iterator<ImageWriter> writers =
+            ImageIO.getImageWritersByFormatName(format);
+         if (!writers.hasNext()) {
+            throw new IOException("No writer for " + format);
+         }
+         ImageWriter writer = writers.next();
+         ImageWriteParam param = null;
+         if (jpeg) {
+            param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
          }
+         writer.setOutput(ios);
+         writer.write(null, new IIOImage(bi, null, null), param);
+         writer.dispose();
          ios.close();
       } catch (IOException ex) {
          throw new RuntimeException("saveImage: " + ex.getMessage());
@@ -285,28 +446,183 @@ public class PPPicture extends PPSimpleShape {
       return out.toByteArray();
    }
 
+/*
+ * Draws the image into a buffered image of the specified size.  Images
+ * are reduced in steps that at most halve each dimension, since bilinear
+ * filtering over larger steps skips pixels and produces aliasing.
+ */
+
+   private static BufferedImage resample(Image image, int width, int height,
+                                         int type) {
+      Image src = image;
+      int w = image.getWidth(null);
+      int h = image.getHeight(null);
+      do {
+         w = Math.max(width, w / 2);
+         h = Math.max(height, h / 2);
+         BufferedImage bi = new BufferedImage(w, h, type);
+         Graphics2D g = bi.createGraphics();
+         g.setComposite(AlphaComposite.Src);
+         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+         g.drawImage(src, 0, 0, w, h, null);
+         g.dispose();
+         src = bi;
+      } while (w != width || h != height);
+      return (BufferedImage) src;
+   }
+
+   private static String getDigest(byte[] data) {
+      try {
+         byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; i < DIGEST_LENGTH; i++) {
+            sb.append(Character.forDigit(hash[i] >> 4 & 0xF, 16));
+            sb.append(Character.forDigit(hash[i] & 0xF, 16));
+         }
+         return sb.toString();
+      } catch (NoSuchAlgorithmException ex) {
+         throw new RuntimeException(ex.toString());
+      }
+   }
+
+/*
+ * Returns the file extension for image data in a format that PowerPoint
+ * can display, or null if the format is not recognized.
+ */
+
+   private static String getImageType(byte[] data) {
+      if (startsWith(data, PNG_SIGNATURE)) return "png";
+      if (startsWith(data, JPEG_SIGNATURE)) return "jpeg";
+      if (startsWith(data, GIF_SIGNATURE)) return "gif";
+      return null;
+   }
+
+   private static boolean startsWith(byte[] data, int[] signature) {
+      if (data.length < signature.length) return false;
+      for (int i = 0; i < signature.length; i++) {
+         if ((data[i] & 0xFF) != signature[i]) return false;
+      }
+      return true;
+   }
+
+   private static byte[] readBytes(InputStream in) throws IOException {
+      try {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         while (true) {
+            int n = in.read(buffer);
+            if (n == -1) break;
+            out.write(buffer, 0, n);
+         }
+         return out.toByteArray();
+      } finally {
+         in.close();
+      }
+   }
+
+/*
+ * Returns the largest step between the pixels read from the image data
+ * that still leaves at least the specified number of pixels in each
+ * dimension.  The reader only needs the header of the file to determine
+ * the size of the image.  The step is 1 if no size is requested or if
+ * no reader recognizes the data.
+ */
+
+   private static int getSubsampling(byte[] data, int width, int height) {
+      if (width <= 0 || height <= 0) return 1;
+      ImageReader reader = getImageReader(data);
+      if (reader == null) return 1;
+      try {
+         return Math.max(1, Math.min(reader.getWidth(0) / width,
+                                     reader.getHeight(0) / height));
+      } catch (IOException ex) {
+         return 1;
+      } finally {
+         reader.dispose();
+      }
+   }
+
+/*
+ * Decodes the image data using ImageIO, reading every step'th pixel in
+ * each direction, and returns null if no reader recognizes the data.
+ * Subsampling happens as the rows are decoded, so the memory used is
+ * determined by the size of the result.
+ */
+
+   private static Image decodeImage(byte[] data, int step) {
+      ImageReader reader = getImageReader(data);
+      if (reader == null) return null;
+      try {
+         ImageReadParam param = reader.getDefaultReadParam();
+         if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+         return reader.read(0, param);
+      } catch (IOException ex) {
+         return null;
+      } finally {
+         reader.dispose();
+      }
+   }
+
+/*
+ * Returns an ImageIO reader for the data, or null if no reader recognizes
+ * it.  The stream is cached in memory to avoid the temporary files that
+ * ImageIO otherwise creates.
+ */
+
+   private static ImageReader getImageReader(byte[] data) {
+      ImageInputStream iis =
+         new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+      if (!readers.hasNext()) return null;
+      ImageReader reader = readers.next();
+      reader.setInput(iis, true, true);
+      return reader;
+   }
+
+   private static Image waitForImage(Image image) {
+      if (image == null) return null;
+      MediaTracker tracker = new MediaTracker(PPUtil.getEmptyContainer());
+      tracker.addImage(image, 0);
+      try {
+         tracker.waitForID(0);
+      } catch (InterruptedException ex) {
+         throw new RuntimeException("Image loading process interrupted");
+      }
+      return image;
+   }
+
    private static boolean isResource(URL url) {
       String name = url.toString().toLowerCase();
       return name.startsWith("jar:") || name.startsWith("file:");
    }
 
-   private static Image readDataImage(String url) {
+   private static byte[] readDataURL(String url) {
       int p0 = url.indexOf(",") + 1;
       if (p0 == 0) throw new RuntimeException("Malformed data URL");
-      byte[] data = DatatypeConverter.parseBase64Binary(url.substring(p0));
-      return Toolkit.getDefaultToolkit().createImage(data);
+      return DatatypeConverter.parseBase64Binary(url.substring(p0));
    }
 
+/* Private constants */
+
+   private static final String MEDIA_PREFIX = "ppt/media/";
+   private static final float JPEG_QUALITY = 0.9F;
+   private static final int DIGEST_LENGTH = 16;
+   private static final int[] PNG_SIGNATURE = {
+      0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+   };
+   private static final int[] JPEG_SIGNATURE = { 0xFF, 0xD8, 0xFF };
+   private static final int[] GIF_SIGNATURE = { 'G', 'I', 'F', '8' };
+
 /* Private instance variables */
 
    private Dimension defaultSize;
    private Image image;
+   private PPCompressedEntry mediaEntry;
+   private PPContext context;
+   private String cacheKey;
    private String path;
-
-/* Static variables */
-
-   private static HashMap<String,Image> nameToImageMap =
-      new HashMap<String,Image>();
-   private static HashMap<Image,String> imageToNameMap =
-      new HashMap<Image,String>();
+   private boolean cached;
+   private int decodeHeight;
+   private int decodeWidth;
 }
@@ -91,6 +91,7 @@ public class PPRectCallout extends PPAutoShape {
    public void setWedgePoint(double x, double y) {
       wedgeX = x;
       wedgeY = y;
+      markDirty();
    }
 
 // Add parser options for this parameter
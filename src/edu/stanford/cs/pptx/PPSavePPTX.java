@@ -8,11 +8,19 @@
 package edu.stanford.cs.pptx;
 
 import edu.stanford.cs.hexbyte.HexByteInputStream;
+import edu.stanford.cs.pptx.util.PPCompressedEntry;
 import edu.stanford.cs.pptx.util.PPOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 
 class PPSavePPTX {
@@ -22,75 +30,156 @@ class PPSavePPTX {
    }
 
    public void save(String filename) {
-      int nSlides = show.getSlideCount();
-      if (filename.startsWith("~/")) {
-         filename = System.getProperty("user.home") + filename.substring(1);
+      try {
+         File file = new File(expandHome(filename));
+         PPOutputStream os = new PPOutputStream(file);
+         try {
+            dumpShow(os);
+            os.close();
+         } finally {
+            os.end();
+         }
+      } catch (IOException ex) {
+         throw new RuntimeException(ex.toString());
       }
+   }
+
+   public void save(OutputStream out) {
       try {
-         PPOutputStream os = new PPOutputStream(new File(filename));
-         for (int i = 1; i < nSlides; i++) {
-            show.getSlide(i).preSaveHook();
+         PPOutputStream os = new PPOutputStream(out);
+         try {
+            dumpShow(os);
+            os.finish();
+         } finally {
+            os.end();
          }
-         dumpStandardFiles(os);
-         dumpSlides(os);
-         dumpMedia(os);
-         os.close();
       } catch (IOException ex) {
          throw new RuntimeException(ex.toString());
       }
    }
 
+/*
+ * The open, writeSlide and close methods write a show whose slides are
+ * supplied one at a time.  The parts that do not depend on the slides
+ * are written when the package is opened, each slide is written as soon
+ * as it arrives, and the parts that list the slides are written when the
+ * package is closed.  Only the titles of the slides and the encoded media
+ * they use are retained.
+ */
+
+   public void open(String filename) {
+      startStream(new PPOutputStream(new File(expandHome(filename))), true);
+   }
+
+   public void open(OutputStream out) {
+      startStream(new PPOutputStream(out), false);
+   }
+
+   public void writeSlide(PPSlide slide) {
+      if (stream == null) {
+         throw new RuntimeException("writeSlide: Show is not open");
+      }
+      titles.add(slide.getTitle());
+      ArrayList<PPPicture> pictures = new ArrayList<PPPicture>();
+      slide.collectPictures(pictures);
+      createMediaEncoder().addMedia(pictures, media);
+      slide.preSaveHook();
+      try {
+         dumpSlideParts(stream, slide, titles.size());
+      } catch (IOException ex) {
+         throw new RuntimeException(ex.toString());
+      }
+   }
+
+   public void close() {
+      if (stream == null) return;
+      try {
+         dumpContents(stream);
+         dumpPresentation(stream);
+         dumpPresentationRels(stream);
+         dumpDocPropsApp(stream);
+         dumpMedia(stream);
+         if (closeStream) {
+            stream.close();
+         } else {
+            stream.finish();
+         }
+      } catch (IOException ex) {
+         throw new RuntimeException(ex.toString());
+      } finally {
+         stream.end();
+         stream = null;
+      }
+   }
+
+   public int getSlideCount() {
+      return (titles == null) ? show.getSlideCount() : titles.size();
+   }
+
 /* Private methods */
 
+   private void startStream(PPOutputStream os, boolean closeStream) {
+      stream = os;
+      this.closeStream = closeStream;
+      titles = new ArrayList<String>();
+      media = new TreeMap<String,PPCompressedEntry>();
+      try {
+         for (PPCompressedEntry entry : getStandardEntries()) {
+            os.writeEntry(entry);
+         }
+         dumpDocPropsCore(os);
+      } catch (IOException ex) {
+         throw new RuntimeException(ex.toString());
+      }
+   }
+
+   private String getSlideTitle(int index) {
+      return (titles == null) ? show.getSlide(index).getTitle()
+                              : titles.get(index - 1);
+   }
+
+   private void dumpShow(PPOutputStream os) throws IOException {
+      int nSlides = show.getSlideCount();
+      for (int i = 1; i <= nSlides; i++) {
+         show.getSlide(i).preSaveHook();
+      }
+      collectMedia();
+      dumpStandardFiles(os);
+      dumpSlides(os);
+      dumpMedia(os);
+   }
+
+/*
+ * Encodes the images used in the show before any slide is written, since
+ * the relationships for each slide name the media parts, which are
+ * identified by their contents.
+ */
+
+   private void collectMedia() {
+      media = new TreeMap<String,PPCompressedEntry>();
+      ArrayList<PPPicture> pictures = new ArrayList<PPPicture>();
+      int n = show.getSlideCount();
+      for (int i = 1; i <= n; i++) {
+         show.getSlide(i).collectPictures(pictures);
+      }
+      createMediaEncoder().addMedia(pictures, media);
+   }
+
+   private PPMediaEncoder createMediaEncoder() {
+      PPMediaEncoder encoder = new PPMediaEncoder(show.isIncrementalSave());
+      encoder.setResolution(show.getImageResolution());
+      if (show.isParallelSave()) {
+         encoder.setThreads(show.getEncodingThreads());
+         encoder.setMemoryLimit(show.getEncodingMemory());
+      }
+      return encoder;
+   }
+
    private void dumpStandardFiles(PPOutputStream os) throws IOException {
       dumpContents(os);
-      dumpFile(os, "_rels/.rels", DOT_RELS);
-      dumpFile(os, "ppt/notesMasters/_rels/notesMaster1.xml.rels",
-                   NOTES_MASTER_1_RELS);
-      dumpFile(os, "ppt/notesMasters/notesMaster1.xml", NOTES_MASTER_1);
-      dumpFile(os, "ppt/presProps.xml", PRES_PROPS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout1.xml.rels",
-                   SLIDE_LAYOUT_1_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout10.xml.rels",
-                   SLIDE_LAYOUT_10_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout11.xml.rels",
-                   SLIDE_LAYOUT_11_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout2.xml.rels",
-                   SLIDE_LAYOUT_2_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout3.xml.rels",
-                   SLIDE_LAYOUT_3_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout4.xml.rels",
-                   SLIDE_LAYOUT_4_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout5.xml.rels",
-                   SLIDE_LAYOUT_5_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout6.xml.rels",
-                   SLIDE_LAYOUT_6_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout7.xml.rels",
-                   SLIDE_LAYOUT_7_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout8.xml.rels",
-                   SLIDE_LAYOUT_8_RELS);
-      dumpFile(os, "ppt/slideLayouts/_rels/slideLayout9.xml.rels",
-                   SLIDE_LAYOUT_9_RELS);
-      dumpFile(os, "ppt/slideLayouts/slideLayout1.xml", SLIDE_LAYOUT_1);
-      dumpFile(os, "ppt/slideLayouts/slideLayout10.xml", SLIDE_LAYOUT_10);
-      dumpFile(os, "ppt/slideLayouts/slideLayout11.xml", SLIDE_LAYOUT_11);
-      dumpFile(os, "ppt/slideLayouts/slideLayout2.xml", SLIDE_LAYOUT_2);
-      dumpFile(os, "ppt/slideLayouts/slideLayout3.xml", SLIDE_LAYOUT_3);
-      dumpFile(os, "ppt/slideLayouts/slideLayout4.xml", SLIDE_LAYOUT_4);
-      dumpFile(os, "ppt/slideLayouts/slideLayout5.xml", SLIDE_LAYOUT_5);
-      dumpFile(os, "ppt/slideLayouts/slideLayout6.xml", SLIDE_LAYOUT_6);
-      dumpFile(os, "ppt/slideLayouts/slideLayout7.xml", SLIDE_LAYOUT_7);
-      dumpFile(os, "ppt/slideLayouts/slideLayout8.xml", SLIDE_LAYOUT_8);
-      dumpFile(os, "ppt/slideLayouts/slideLayout9.xml", SLIDE_LAYOUT_9);
-      dumpFile(os, "ppt/slideMasters/_rels/slideMaster1.xml.rels",
-                   SLIDE_MASTER_1_RELS);
-      dumpFile(os, "ppt/slideMasters/slideMaster1.xml", SLIDE_MASTER_1);
-      dumpFile(os, "ppt/tableStyles.xml", TABLE_STYLES);
-      dumpFile(os, "ppt/theme/theme1.xml", THEME_1);
-      dumpFile(os, "ppt/theme/theme2.xml", THEME_2);
-      dumpFile(os, "ppt/viewProps.xml", VIEW_PROPS);
-      dumpFile(os, "ppt/printerSettings/printerSettings1.bin",
-                   PRINTER_SETTINGS_1);
+      for (PPCompressedEntry entry : getStandardEntries()) {
+         os.writeEntry(entry);
+      }
       dumpPresentation(os);
       dumpPresentationRels(os);
       dumpDocPropsApp(os);
@@ -98,7 +187,7 @@ class PPSavePPTX {
    }
 
    private void dumpContents(PPOutputStream os) throws IOException {
-      int nSlides = show.getSlideCount();
+      int nSlides = getSlideCount();
       os.putNextEntry(new ZipEntry("[Content_Types].xml"));
       os.println("<?xml version='1.0' encoding='UTF-8' standalone='yes'?>");
       os.print("<Types xmlns='http://schemas.openxmlformats.org/" +
@@ -111,6 +200,12 @@ class PPSavePPTX {
                "-package.relationships+xml'/>");
       os.print("<Default Extension='xml' ContentType='application/xml'/>");
       os.print("<Default Extension='png' ContentType='image/png'/>");
+      if (hasMediaType("jpeg")) {
+         os.print("<Default Extension='jpeg' ContentType='image/jpeg'/>");
+      }
+      if (hasMediaType("gif")) {
+         os.print("<Default Extension='gif' ContentType='image/gif'/>");
+      }
       os.print("<Override PartName='/docProps/app.xml' " +
                "ContentType='application/vnd.openxmlformats" +
                "-officedocument.extended-properties+xml'/>");
@@ -186,7 +281,7 @@ class PPSavePPTX {
    }
 
    private void dumpDocPropsApp(PPOutputStream os) throws IOException {
-      int nSlides = show.getSlideCount();
+      int nSlides = getSlideCount();
       os.putNextEntry(new ZipEntry("docProps/app.xml"));
       os.println("<?xml version='1.0' encoding='UTF-8' standalone='yes'?>");
       os.print("<Properties ");
@@ -214,7 +309,7 @@ class PPSavePPTX {
                "' baseType='lpstr'>");
       os.print("<vt:lpstr>Blank Presentation</vt:lpstr>");
       for (int i = 1; i <= nSlides; i++) {
-         os.print("<vt:lpstr>" + show.getSlide(i).getTitle() + "</vt:lpstr>");
+         os.print("<vt:lpstr>" + getSlideTitle(i) + "</vt:lpstr>");
       }
       os.print("</vt:vector></TitlesOfParts>");
       String company = System.getenv("ORGANIZATION");
@@ -253,20 +348,92 @@ class PPSavePPTX {
 
    private void dumpSlides(PPOutputStream os) throws IOException {
       int n = show.getSlideCount();
+      if (show.isParallelSave() && n > 1) {
+         dumpSlidesInParallel(os);
+      } else {
+         for (int i = 1; i <= n; i++) {
+            dumpSlide(os, show.getSlide(i), i);
+         }
+      }
+   }
+
+/*
+ * Renders the parts for each slide into a detached stream on the common
+ * pool and then copies the compressed entries into the package in slide
+ * order.  Each slide resets the ID sequence at the start of its timing
+ * list, so the output is identical to that of the sequential path.
+ */
+
+   private void dumpSlidesInParallel(PPOutputStream os) throws IOException {
+      int n = show.getSlideCount();
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      ArrayList<Future<ArrayList<PPCompressedEntry>>> parts =
+         new ArrayList<Future<ArrayList<PPCompressedEntry>>>();
       for (int i = 1; i <= n; i++) {
-         dumpSlide(os, i);
+         final int index = i;
+         final PPSlide slide = show.getSlide(i);
+         parts.add(pool.submit(new Callable<ArrayList<PPCompressedEntry>>() {
+            public ArrayList<PPCompressedEntry> call() throws IOException {
+               PPOutputStream buffer = new PPOutputStream();
+               dumpSlide(buffer, slide, index);
+               buffer.close();
+               return buffer.getEntries();
+            }
+         }));
+      }
+      try {
+         for (Future<ArrayList<PPCompressedEntry>> future : parts) {
+            for (PPCompressedEntry entry : future.get()) {
+               os.writeEntry(entry);
+            }
+         }
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new RuntimeException(ex.toString());
+      } catch (ExecutionException ex) {
+         Throwable cause = ex.getCause();
+         if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+         }
+         throw new RuntimeException(cause.toString());
+      } finally {
+         for (Future<ArrayList<PPCompressedEntry>> future : parts) {
+            future.cancel(false);
+         }
       }
    }
 
-   private void dumpSlide(PPOutputStream os, int index) throws IOException {
-      dumpSlideXML(os, index);
-      dumpSlideRels(os, index);
+   private void dumpSlide(PPOutputStream os, PPSlide slide, int index)
+                throws IOException {
+      if (show.isIncrementalSave()) {
+         ArrayList<PPCompressedEntry> parts = slide.getSavedParts(index);
+         if (parts == null) {
+            PPOutputStream buffer = new PPOutputStream();
+            dumpSlideParts(buffer, slide, index);
+            buffer.close();
+            parts = buffer.getEntries();
+            slide.setSavedParts(index, parts);
+         }
+         for (PPCompressedEntry entry : parts) {
+            os.writeEntry(entry);
+         }
+      } else {
+         dumpSlideParts(os, slide, index);
+      }
+   }
+
+   private void dumpSlideParts(PPOutputStream os, PPSlide slide, int index)
+                throws IOException {
+      dumpSlideXML(os, slide, index);
+      dumpSlideRels(os, slide, index);
       dumpNotesXML(os, index);
       dumpNotesRels(os, index);
    }
 
    private void dumpPresentation(PPOutputStream os) throws IOException {
-      int n = show.getSlideCount();
+      int n = getSlideCount();
       os.putNextEntry(new ZipEntry("ppt/presentation.xml"));
       os.println("<?xml version='1.0' encoding='UTF-8' standalone='yes'?>");
       os.print("<p:presentation ");
@@ -402,7 +569,7 @@ class PPSavePPTX {
    }
 
    private void dumpPresentationRels(PPOutputStream os) throws IOException {
-      int n = show.getSlideCount();
+      int n = getSlideCount();
       os.putNextEntry(new ZipEntry("ppt/_rels/presentation.xml.rels"));
       os.println("<?xml version='1.0' encoding='UTF-8' standalone='yes'?>");
       os.print("<Relationships ");
@@ -446,17 +613,16 @@ class PPSavePPTX {
       os.closeEntry();
    }
 
-   private void dumpSlideXML(PPOutputStream os, int index)
+   private void dumpSlideXML(PPOutputStream os, PPSlide slide, int index)
                 throws IOException {
       os.putNextEntry(new ZipEntry("ppt/slides/slide" +
                                    index + ".xml"));
-      show.getSlide(index).dumpSlide(os);
+      slide.dumpSlide(os);
       os.closeEntry();
    }
 
-   private void dumpSlideRels(PPOutputStream os, int index)
+   private void dumpSlideRels(PPOutputStream os, PPSlide slide, int index)
                 throws IOException {
-      PPSlide slide = show.getSlide(index);
       os.putNextEntry(new ZipEntry("ppt/slides/_rels/slide" +
                                    index + ".xml.rels"));
       os.println("<?xml version='1.0' encoding='UTF-8' standalone='yes'?>");
@@ -559,15 +725,43 @@ class PPSavePPTX {
       os.closeEntry();
    }
 
+   private boolean hasMediaType(String extension) {
+      for (String name : media.keySet()) {
+         if (name.endsWith("." + extension)) return true;
+      }
+      return false;
+   }
+
    private void dumpMedia(PPOutputStream os) throws IOException {
-      PPPicture.dumpImages(os);
+      PPPicture.dumpImages(os, media);
    }
 
-   private void dumpFile(PPOutputStream os, String name, String bytes)
-                throws IOException {
-      os.putNextEntry(new ZipEntry(name));
-      os.write(HexByteInputStream.toByteArray(bytes));
-      os.closeEntry();
+   private static String expandHome(String filename) {
+      if (filename.startsWith("~/")) {
+         filename = System.getProperty("user.home") + filename.substring(1);
+      }
+      return filename;
+   }
+
+/*
+ * Returns the compressed entries for the standard files.  Decoding and
+ * compressing these files is expensive relative to writing a small show,
+ * so the entries are created on the first call and then copied verbatim
+ * into every package.
+ */
+
+   private static synchronized PPCompressedEntry[] getStandardEntries() {
+      if (standardEntries == null) {
+         int n = STANDARD_FILES.length;
+         PPCompressedEntry[] entries = new PPCompressedEntry[n];
+         for (int i = 0; i < n; i++) {
+            String name = STANDARD_FILES[i][0];
+            byte[] data = HexByteInputStream.toByteArray(STANDARD_FILES[i][1]);
+            entries[i] = PPCompressedEntry.compress(name, data);
+         }
+         standardEntries = entries;
+      }
+      return standardEntries;
    }
 
 /* Private constants */
@@ -3947,8 +4141,60 @@ class PPSavePPTX {
       "6E7453657474696E67735469636B65743C2F737472696E673E0A3C2F64696374" +
       "3E0A3C2F706C6973743E0A";
 
+/*
+ * The standard files are the parts of the package that are the same in
+ * every show.  Each entry pairs the name of the part with the hex string
+ * that encodes its contents.
+ */
+
+   private static final String[][] STANDARD_FILES = {
+      { "_rels/.rels", DOT_RELS },
+      { "ppt/notesMasters/_rels/notesMaster1.xml.rels", NOTES_MASTER_1_RELS },
+      { "ppt/notesMasters/notesMaster1.xml", NOTES_MASTER_1 },
+      { "ppt/presProps.xml", PRES_PROPS },
+      { "ppt/slideLayouts/_rels/slideLayout1.xml.rels", SLIDE_LAYOUT_1_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout10.xml.rels",
+        SLIDE_LAYOUT_10_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout11.xml.rels",
+        SLIDE_LAYOUT_11_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout2.xml.rels", SLIDE_LAYOUT_2_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout3.xml.rels", SLIDE_LAYOUT_3_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout4.xml.rels", SLIDE_LAYOUT_4_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout5.xml.rels", SLIDE_LAYOUT_5_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout6.xml.rels", SLIDE_LAYOUT_6_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout7.xml.rels", SLIDE_LAYOUT_7_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout8.xml.rels", SLIDE_LAYOUT_8_RELS },
+      { "ppt/slideLayouts/_rels/slideLayout9.xml.rels", SLIDE_LAYOUT_9_RELS },
+      { "ppt/slideLayouts/slideLayout1.xml", SLIDE_LAYOUT_1 },
+      { "ppt/slideLayouts/slideLayout10.xml", SLIDE_LAYOUT_10 },
+      { "ppt/slideLayouts/slideLayout11.xml", SLIDE_LAYOUT_11 },
+      { "ppt/slideLayouts/slideLayout2.xml", SLIDE_LAYOUT_2 },
+      { "ppt/slideLayouts/slideLayout3.xml", SLIDE_LAYOUT_3 },
+      { "ppt/slideLayouts/slideLayout4.xml", SLIDE_LAYOUT_4 },
+      { "ppt/slideLayouts/slideLayout5.xml", SLIDE_LAYOUT_5 },
+      { "ppt/slideLayouts/slideLayout6.xml", SLIDE_LAYOUT_6 },
+      { "ppt/slideLayouts/slideLayout7.xml", SLIDE_LAYOUT_7 },
+      { "ppt/slideLayouts/slideLayout8.xml", SLIDE_LAYOUT_8 },
+      { "ppt/slideLayouts/slideLayout9.xml", SLIDE_LAYOUT_9 },
+      { "ppt/slideMasters/_rels/slideMaster1.xml.rels", SLIDE_MASTER_1_RELS },
+      { "ppt/slideMasters/slideMaster1.xml", SLIDE_MASTER_1 },
+      { "ppt/tableStyles.xml", TABLE_STYLES },
+      { "ppt/theme/theme1.xml", THEME_1 },
+      { "ppt/theme/theme2.xml", THEME_2 },
+      { "ppt/viewProps.xml", VIEW_PROPS },
+      { "ppt/printerSettings/printerSettings1.bin", PRINTER_SETTINGS_1 },
+   };
+
 /* Private instance variables */
 
+   private ArrayList<String> titles;
+   private PPOutputStream stream;
+   private TreeMap<String,PPCompressedEntry> media;
    private PPShow show;
+   private boolean closeStream;
+
+/* Static variables */
+
+   private static PPCompressedEntry[] standardEntries = null;
 
 }
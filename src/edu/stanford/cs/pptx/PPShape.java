@@ -17,6 +17,7 @@ import edu.stanford.cs.pptx.effect.MotionPathState;
 import edu.stanford.cs.pptx.util.PPOutputStream;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 
 /**
  * This abstract class represents the top of the hierarchy that includes
@@ -47,6 +48,7 @@ public abstract class PPShape {
 
    public void setName(String name) {
       shapeName = name;
+      markDirty();
    }
 
 /**
@@ -106,6 +108,7 @@ public abstract class PPShape {
 
    public void setOptions(String str) {
       createOptionParser().parseOptions(str);
+      markDirty();
    }
 
 /**
@@ -168,15 +171,49 @@ public abstract class PPShape {
  */
 
    public void addAnimation(String str) {
+      animate(AnimationEffect.createEffect(str, this));
+   }
+
+/**
+ * Adds an animation effect that has been created directly, which avoids
+ * parsing an option string.  The options of the effect are set by calling
+ * its methods, which can be chained as in the following example:
+ *
+ *<pre>
+ *    shape.animate(FlyInEffect.fromLeft().afterPrevious().duration(0.5));
+ *</pre>
+ *
+ * An effect can be added to only one shape; adding it to a second shape
+ * throws an <code>IllegalStateException</code>.  A motion effect, such
+ * as <code>LinearMotionEffect.by(dx, dy)</code>, continues from the end
+ * of the previous motion of the shape and moves the location returned
+ * by <code>getLocation</code>.
+ *
+ * @param effect The animation effect for this shape
+ */
+
+   public void animate(AnimationEffect effect) {
       PPSlide slide = getSlide();
       if (slide == null) {
          throw new RuntimeException("Animations can only be applied " +
                                     "to installed shapes");
       }
-      AnimationEffect effect = AnimationEffect.createEffect(str, this);
+      PPShape owner = effect.getShape();
+      if (owner != null && owner != this) {
+         throw new IllegalStateException("animate: Effect has already " +
+                                         "been added to another shape");
+      }
+      effect.setShape(this);
       if (effect instanceof LinearMotionEffect) {
+         LinearMotionEffect motion = (LinearMotionEffect) effect;
          initMotionPathState();
-         ((LinearMotionEffect) effect).setState(mpState);
+         motion.setState(mpState);
+         mpState.adjustCurrentLocation(motion.getDX(), motion.getDY());
+      } else if (effect instanceof BezierMotionEffect) {
+         BezierMotionEffect motion = (BezierMotionEffect) effect;
+         initMotionPathState();
+         motion.setState(mpState);
+         mpState.adjustCurrentLocation(motion.getDX(), motion.getDY());
       }
       slide.addAnimation(effect);
    }
@@ -311,20 +348,11 @@ public abstract class PPShape {
  */
 
    public void move(double dx, double dy, String options) {
-      PPSlide slide = getSlide();
-      if (slide == null) {
-         throw new RuntimeException("Animations can only be applied " +
-                                    "to installed shapes");
-      }
-      initMotionPathState();
-      String str = "LinearMotion";
-      str += "/dx:" + dx + "/dy:" + dy +
-             "/speed:" + speed + "/afterPrev" + options;
-      LinearMotionEffect mpEffect =
-         (LinearMotionEffect) AnimationEffect.createEffect(str, this);
-      mpEffect.setState(mpState);
-      slide.addAnimation(mpEffect);
-      mpState.adjustCurrentLocation(dx, dy);
+      LinearMotionEffect effect = LinearMotionEffect.by(dx, dy);
+      if (options.length() > 0) effect.parseOptions(options);
+      if (effect.getSpeed() < 0) effect.speed(speed);
+      if (effect.getTrigger() == null) effect.afterPrevious();
+      animate(effect);
    }
 
 /**
@@ -401,22 +429,12 @@ public abstract class PPShape {
       double dy2 = y2 - current.getY();
       double dx3 = x3 - current.getX();
       double dy3 = y3 - current.getY();
-      PPSlide slide = getSlide();
-      if (slide == null) {
-         throw new RuntimeException("Animations can only be applied " +
-                                    "to installed shapes");
-      }
-      initMotionPathState();
-      String str = "BezierMotion";
-      str += "/dx1:" + dx1 + "/dy1:" + dy1 +
-             "/dx2:" + dx2 + "/dy2:" + dy2 + 
-             "/dx3:" + dx3 + "/dy3:" + dy3 + 
-             "/speed:" + speed + "/afterPrev" + options;
-      BezierMotionEffect mpEffect =
-         (BezierMotionEffect) AnimationEffect.createEffect(str, this);
-      mpEffect.setState(mpState);
-      slide.addAnimation(mpEffect);
-      mpState.adjustCurrentLocation(dx3, dy3);
+      BezierMotionEffect effect =
+         BezierMotionEffect.through(dx1, dy1, dx2, dy2, dx3, dy3);
+      if (options.length() > 0) effect.parseOptions(options);
+      if (effect.getSpeed() < 0) effect.speed(speed);
+      if (effect.getTrigger() == null) effect.afterPrevious();
+      animate(effect);
    }
 
 /**
@@ -536,6 +554,7 @@ public abstract class PPShape {
 
    public void setBounds(Rectangle2D bounds) {
       this.bounds = bounds;
+      markDirty();
    }
 
 /**
@@ -592,7 +611,7 @@ public abstract class PPShape {
 /* Protected methods */
 
    protected PPShape() {
-      id = ++nextId;
+      id = PPContext.getCurrent().nextShapeId();
       shapeName = null;
       mpState = null;
       setMotionPathSpeed(MotionPathState.DEFAULT_SPEED);
@@ -606,6 +625,10 @@ public abstract class PPShape {
       /* Empty */
    }
 
+   protected void collectPictures(ArrayList<PPPicture> pictures) {
+      /* Empty */
+   }
+
    protected void adjustLocation(double dx, double dy) {
       Rectangle2D bounds = getBounds();
       setInitialLocation(bounds.getX() + dx, bounds.getY() + dy);
@@ -615,6 +638,22 @@ public abstract class PPShape {
       return new PPShapeOptionParser(this);
    }
 
+/*
+ * Marks the slide that contains this shape as changed, so that an
+ * incremental save writes the slide again.  Every method that changes
+ * the appearance of a shape calls this method.  A shape inside a group
+ * passes the change on to the group, which reports it to its slide.
+ */
+
+   protected void markDirty() {
+      if (slide != null) slide.markDirty();
+      if (group != null) group.markDirty();
+   }
+
+   protected void setGroup(PPGroup group) {
+      this.group = group;
+   }
+
 /* Private methods */
 
    private void initMotionPathState() {
@@ -623,13 +662,10 @@ public abstract class PPShape {
       }
    }
 
-/* Private class variables */
-
-   private static int nextId = 0;
-
 /* Private instance variables */
 
    private MotionPathState mpState;
+   private PPGroup group;
    private PPSlide slide;
    private Rectangle2D bounds;
    private String shapeName;
@@ -8,8 +8,6 @@ package edu.stanford.cs.pptx;
 
 import edu.stanford.cs.options.OptionParser;
 import java.awt.geom.Rectangle2D;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 class PPShapeOptionParser extends OptionParser {
 
@@ -17,21 +15,6 @@ class PPShapeOptionParser extends OptionParser {
       target = obj;
    }
 
-   public void invokeKey(String key, String value) {
-      Class<?>[] types = { String.class };
-      Object[] args = { value };
-      try {
-         Method fn = getClass().getMethod(key + "Key", types);
-         fn.invoke(this, args);
-      } catch (NoSuchMethodException ex) {
-         undefinedKey(key, value);
-      } catch (InvocationTargetException ex) {
-         throw new RuntimeException(ex);
-      } catch (IllegalAccessException ex) {
-         throw new RuntimeException(ex);
-      }
-   }
-
    public void postOptionHook() {
       super.postOptionHook();
       Rectangle2D bounds = target.getBounds();
@@ -9,6 +9,9 @@ package edu.stanford.cs.pptx;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.geom.Dimension2D;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 
 /**
@@ -29,6 +32,10 @@ public class PPShow {
       slides.add(null);
       title = "SlideShow";
       format = "On-screen Show (4:3)";
+      context = PPContext.getCurrent();
+      encodingThreads = Runtime.getRuntime().availableProcessors();
+      encodingMemory = DEFAULT_ENCODING_MEMORY;
+      closed = false;
       setBackground(DEFAULT_BACKGROUND);
    }
 
@@ -79,9 +86,204 @@ public class PPShow {
  */
 
    public void save(String filename) {
+      checkNotOpen("save");
       new PPSavePPTX(this).save(filename);
    }
 
+/**
+ * Writes this slide show in <code>.pptx</code> format to the specified
+ * output stream.  The parts of the package are written as soon as they
+ * are complete, and the stream is flushed but not closed at the end.
+ *
+ * @param out The output stream to which the show is written
+ */
+
+   public void save(OutputStream out) {
+      checkNotOpen("save");
+      new PPSavePPTX(this).save(out);
+   }
+
+/**
+ * Writes this slide show in <code>.pptx</code> format to the specified
+ * channel, which is left open at the end.
+ *
+ * @param channel The channel to which the show is written
+ */
+
+   public void save(WritableByteChannel channel) {
+      save(Channels.newOutputStream(channel));
+   }
+
+/**
+ * Opens the specified file so that each slide is written as soon as it
+ * is added to the show.  Any slides already in the show are written
+ * immediately.  Slides are released once they are written, so that the
+ * memory needed for a long show is bounded by the size of one slide and
+ * its media.  The parts of the package that list the slides are written
+ * when <code>close</code> is called.
+ *
+ * @param filename The pathname to which the <code>.pptx</code> file is saved
+ */
+
+   public void open(String filename) {
+      checkNotOpen("open");
+      writer = new PPSavePPTX(this);
+      writer.open(filename);
+      writePendingSlides();
+   }
+
+/**
+ * Opens the specified output stream so that each slide is written as soon
+ * as it is added to the show.  The stream is flushed but not closed when
+ * <code>close</code> is called.
+ *
+ * @param out The output stream to which the show is written
+ */
+
+   public void open(OutputStream out) {
+      checkNotOpen("open");
+      writer = new PPSavePPTX(this);
+      writer.open(out);
+      writePendingSlides();
+   }
+
+/**
+ * Completes a show that was opened using <code>open</code>.  Because the
+ * slides of an open show are released as they are written, a show that
+ * has been closed cannot be changed, saved, or opened again.
+ */
+
+   public void close() {
+      checkNotClosed("close");
+      if (writer == null) return;
+      try {
+         writer.close();
+      } finally {
+         writer = null;
+         closed = true;
+      }
+   }
+
+/**
+ * Sets whether the slides are rendered and the images are encoded in
+ * parallel when the show is saved.  The contents of the saved file are
+ * the same in either mode, but large shows save more quickly in parallel
+ * on machines with several cores.
+ *
+ * @param flag <code>true</code> to render the slides in parallel
+ */
+
+   public void setParallelSave(boolean flag) {
+      parallelSave = flag;
+   }
+
+/**
+ * Returns whether the slides are rendered in parallel when the show is
+ * saved.
+ *
+ * @return <code>true</code> if the slides are rendered in parallel
+ */
+
+   public boolean isParallelSave() {
+      return parallelSave;
+   }
+
+/**
+ * Sets the resolution in dots per inch at which images are stored when
+ * the show is saved.  Images with more pixels than they need to appear
+ * at this resolution are resampled to the size at which they are shown,
+ * which makes shows built from large images smaller and faster to save
+ * and open.  The default value of zero stores every image at its full
+ * resolution.
+ *
+ * @param dpi The resolution for images, or 0 to keep their full size
+ */
+
+   public void setImageResolution(double dpi) {
+      imageResolution = dpi;
+   }
+
+/**
+ * Returns the resolution in dots per inch at which images are stored, or
+ * zero if images are stored at their full size.
+ *
+ * @return The resolution for images
+ */
+
+   public double getImageResolution() {
+      return imageResolution;
+   }
+
+/**
+ * Sets the number of images that may be encoded at the same time when
+ * the show is saved in parallel.  The default is the number of available
+ * processors.
+ *
+ * @param nThreads The number of images encoded at the same time
+ */
+
+   public void setEncodingThreads(int nThreads) {
+      encodingThreads = nThreads;
+   }
+
+/**
+ * Returns the number of images that may be encoded at the same time when
+ * the show is saved in parallel.
+ *
+ * @return The number of images encoded at the same time
+ */
+
+   public int getEncodingThreads() {
+      return encodingThreads;
+   }
+
+/**
+ * Sets the number of bytes that the images being encoded at the same
+ * time may use for their pixels when the show is saved in parallel.  A
+ * larger image is still encoded, but only by itself.
+ *
+ * @param bytes The memory available for encoding images
+ */
+
+   public void setEncodingMemory(long bytes) {
+      encodingMemory = bytes;
+   }
+
+/**
+ * Returns the number of bytes that the images being encoded at the same
+ * time may use for their pixels when the show is saved in parallel.
+ *
+ * @return The memory available for encoding images
+ */
+
+   public long getEncodingMemory() {
+      return encodingMemory;
+   }
+
+/**
+ * Sets whether saving this show reuses the compressed parts from the
+ * previous save for slides that have not changed.  Adding shapes or
+ * animations to a slide and changing the shapes on it through their
+ * methods are recorded automatically.
+ *
+ * @param flag <code>true</code> to save incrementally
+ */
+
+   public void setIncrementalSave(boolean flag) {
+      incrementalSave = flag;
+   }
+
+/**
+ * Returns whether saving this show reuses the compressed parts of slides
+ * that have not changed since the previous save.
+ *
+ * @return <code>true</code> if the show is saved incrementally
+ */
+
+   public boolean isIncrementalSave() {
+      return incrementalSave;
+   }
+
 /**
  * Returns the number of slides in this presentation.
  *
@@ -89,6 +291,7 @@ public class PPShow {
  */
 
    public int getSlideCount() {
+      if (writer != null) return writer.getSlideCount();
       return slides.size() - 1;
    }
 
@@ -100,6 +303,10 @@ public class PPShow {
  */
 
    public PPSlide getSlide(int index) {
+      if (writer != null) {
+         throw new RuntimeException("getSlide: Slides in an open show " +
+                                    "are released when they are written");
+      }
       if (index < 1 || index >= slides.size()) {
          throw new RuntimeException("getSlide: Index " + index +
                                     " is out of bounds");
@@ -158,6 +365,17 @@ public class PPShow {
       return bgColor;
    }
 
+/**
+ * Returns the context in which this show was created, which supplies the
+ * identifiers and images for the objects in the show.
+ *
+ * @return The context for this show
+ */
+
+   public PPContext getContext() {
+      return context;
+   }
+
 /**
  * Returns a printable string representation for this PowerPoint show.
  *
@@ -175,7 +393,35 @@ public class PPShow {
  */
 
    public void add(PPSlide slide) {
-      slides.add(slide);
+      checkNotClosed("add");
+      if (writer == null) {
+         slides.add(slide);
+      } else {
+         writer.writeSlide(slide);
+      }
+   }
+
+/* Private methods */
+
+   private void checkNotOpen(String method) {
+      checkNotClosed(method);
+      if (writer != null) {
+         throw new RuntimeException(method + ": Show has already been opened");
+      }
+   }
+
+   private void checkNotClosed(String method) {
+      if (closed) {
+         throw new IllegalStateException(method + ": Show has been closed");
+      }
+   }
+
+   private void writePendingSlides() {
+      for (int i = 1; i < slides.size(); i++) {
+         writer.writeSlide(slides.get(i));
+      }
+      slides.clear();
+      slides.add(null);
    }
 
 /* Public constants */
@@ -198,11 +444,23 @@ public class PPShow {
 
    public static final Color DEFAULT_BACKGROUND = new Color(0xCCFFFF);
 
+/* Private constants */
+
+   private static final long DEFAULT_ENCODING_MEMORY = 64L << 20;
+
 /* Private instance variables */
 
    private ArrayList<PPSlide> slides;
    private Color bgColor;
+   private PPContext context;
+   private PPSavePPTX writer;
    private String format;
    private String title;
+   private boolean closed;
+   private boolean incrementalSave;
+   private boolean parallelSave;
+   private double imageResolution;
+   private int encodingThreads;
+   private long encodingMemory;
 
 }
@@ -51,6 +51,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setRotation(double theta) {
       rotation = theta;
+      markDirty();
    }
 
 /**
@@ -94,6 +95,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setFillColor(Color color) {
       fillColor = color;
+      markDirty();
    }
 
 /**
@@ -127,6 +129,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setLineColor(Color color) {
       lineColor = color;
+      markDirty();
    }
 
 /**
@@ -159,6 +162,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setLineWeight(double weight) {
       lineWeight = weight;
+      markDirty();
    }
 
 /**
@@ -185,6 +189,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setStartArrow(String str) {
       startArrow = str;
+      markDirty();
    }
 
 /**
@@ -211,6 +216,7 @@ abstract class PPSimpleShape extends PPShape {
 
    public void setEndArrow(String str) {
       endArrow = str;
+      markDirty();
    }
 
 /**
@@ -8,6 +8,7 @@ package edu.stanford.cs.pptx;
 
 import edu.stanford.cs.pptx.effect.AnimationEffect;
 import edu.stanford.cs.pptx.effect.SlideTransition;
+import edu.stanford.cs.pptx.util.PPCompressedEntry;
 import edu.stanford.cs.pptx.util.PPOutputStream;
 import java.awt.Color;
 import java.awt.Font;
@@ -28,8 +29,9 @@ public class PPSlide {
       contents = new ArrayList<PPShape>();
       animationList = new ArrayList<AnimationEffect>();
       updateNeeded = true;
+      dirty = true;
       transition = "";
-      id = nextId++;
+      id = PPContext.getCurrent().nextSlideId();
    }
 
 /**
@@ -110,6 +112,7 @@ public class PPSlide {
    public void add(PPShape shape) {
       shape.setSlide(this);
       contents.add(shape);
+      markDirty();
    }
 
 /**
@@ -135,6 +138,7 @@ public class PPSlide {
    public void sendToFront(PPShape shape) {
       contents.remove(shape);
       contents.add(shape);
+      markDirty();
    }
 
 /**
@@ -146,6 +150,7 @@ public class PPSlide {
    public void sendToBack(PPShape shape) {
       contents.remove(shape);
       contents.add(0, shape);
+      markDirty();
    }
 
 /**
@@ -156,6 +161,18 @@ public class PPSlide {
 
    public void setTransition(String transition) {
       this.transition = transition;
+      markDirty();
+   }
+
+/**
+ * Marks this slide as changed so that an incremental save writes it
+ * again.  The slide and its shapes call this method whenever they are
+ * changed, so clients need to call it only after changing the slide in
+ * some way that does not go through those methods.
+ */
+
+   public void markDirty() {
+      dirty = true;
    }
 
 /**
@@ -226,6 +243,12 @@ public class PPSlide {
       }
    }
 
+   protected void collectPictures(ArrayList<PPPicture> pictures) {
+      for (PPShape shape : contents) {
+         shape.collectPictures(pictures);
+      }
+   }
+
    protected ArrayList<AnimationEffect> getAnimationList() {
       return animationList;
    }
@@ -238,6 +261,29 @@ public class PPSlide {
    protected void addAnimation(AnimationEffect animation) {
       animationList.add(animation);
       updateNeeded = true;
+      markDirty();
+   }
+
+/*
+ * The parts saved for a slide are reused only if the slide has the same
+ * index and its pictures refer to the same media parts as they did when
+ * the parts were saved.  The name of a media part depends on the size at
+ * which the image is encoded, which can change when a picture on some
+ * other slide changes, and the saved relationships name the old part.
+ */
+
+   protected ArrayList<PPCompressedEntry> getSavedParts(int index) {
+      if (dirty || index != savedIndex) return null;
+      if (!getMediaNames().equals(savedMedia)) return null;
+      return savedParts;
+   }
+
+   protected void setSavedParts(int index,
+                                ArrayList<PPCompressedEntry> parts) {
+      savedParts = parts;
+      savedMedia = getMediaNames();
+      savedIndex = index;
+      dirty = false;
    }
 
    protected void preSaveHook() {
@@ -251,13 +297,15 @@ public class PPSlide {
       os.print("<p:timing>");
       os.print("<p:tnLst>");
       os.print("<p:par>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='indefinite' restart='never' nodeType='tmRoot'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='indefinite' restart='never' nodeType='tmRoot'>");
       if (!animationList.isEmpty()) {
          os.print("<p:childTnLst>");
          os.print("<p:seq concurrent='1' nextAc='seek'>");
-         os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-                  "dur='indefinite' nodeType='mainSeq'>");
+         os.print("<p:cTn");
+         os.printAttr("id", os.getNextSequenceId());
+         os.print(" dur='indefinite' nodeType='mainSeq'>");
          os.print("<p:childTnLst>");
          AnimationEffect.dumpAnimationList(os, animationList);
          os.print("</p:childTnLst>");
@@ -286,6 +334,16 @@ public class PPSlide {
       os.print("</p:timing>");
    }
 
+   private ArrayList<String> getMediaNames() {
+      ArrayList<PPPicture> pictures = new ArrayList<PPPicture>();
+      collectPictures(pictures);
+      ArrayList<String> names = new ArrayList<String>();
+      for (PPPicture picture : pictures) {
+         names.add(picture.getMediaName());
+      }
+      return names;
+   }
+
 /* Private constants */
 
    private static final Font TITLE_FONT = Font.decode("Times New Roman-40");
@@ -295,15 +353,15 @@ public class PPSlide {
 /* Private instance variables */
 
    private ArrayList<AnimationEffect> animationList;
+   private ArrayList<PPCompressedEntry> savedParts;
    private ArrayList<PPShape> contents;
+   private ArrayList<String> savedMedia;
    private PPTextShape titleBox;
    private String title;
    private String transition;
+   private boolean dirty;
    private boolean updateNeeded;
    private int id;
-
-/* Static variables */
-
-   private static int nextId = 1;
+   private int savedIndex;
 
 }
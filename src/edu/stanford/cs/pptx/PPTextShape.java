@@ -8,6 +8,8 @@
 package edu.stanford.cs.pptx;
 
 import edu.stanford.cs.options.OptionParser;
+import edu.stanford.cs.pptx.util.PPFontMetrics;
+import edu.stanford.cs.pptx.util.PPOutputStream;
 import edu.stanford.cs.pptx.util.PPUtil;
 import java.awt.Color;
 import java.awt.Font;
@@ -41,6 +43,7 @@ public class PPTextShape extends PPSimpleShape {
    public void setText(String text) {
       this.text = text;
       fixBounds();
+      markDirty();
    }
 
 /**
@@ -61,8 +64,9 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setFont(Font font) {
       this.font = font;
-      fm = PPUtil.getEmptyContainer().getFontMetrics(font);
+      metrics = PPFontMetrics.getFontMetrics(font);
       fixBounds();
+      markDirty();
    }
 
 /**
@@ -98,7 +102,7 @@ public class PPTextShape extends PPSimpleShape {
  */
 
    public FontMetrics getFontMetrics() {
-      return fm;
+      return metrics.getFontMetrics();
    }
 
 /**
@@ -109,6 +113,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setFontColor(Color color) {
       this.color = color;
+      markDirty();
    }
 
 /**
@@ -143,6 +148,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setHorizontalAlignment(String alignment) {
       hAlign = alignment;
+      markDirty();
    }
 
 /**
@@ -167,6 +173,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setVerticalAlignment(String alignment) {
       vAlign = alignment;
+      markDirty();
    }
 
 /**
@@ -191,6 +198,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setLineSpacing(double spacing) {
       lineSpacing = spacing;
+      markDirty();
    }
 
 /**
@@ -212,6 +220,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setWordWrapFlag(boolean flag) {
       wordWrapFlag = flag;
+      markDirty();
    }
 
 /**
@@ -232,6 +241,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setLeftMargin(double margin) {
       marginLeft = margin;
+      markDirty();
    }
 
 /**
@@ -252,6 +262,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setRightMargin(double margin) {
       marginRight = margin;
+      markDirty();
    }
 
 /**
@@ -272,6 +283,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setTopMargin(double margin) {
       marginTop = margin;
+      markDirty();
    }
 
 /**
@@ -292,6 +304,7 @@ public class PPTextShape extends PPSimpleShape {
 
    public void setBottomMargin(double margin) {
       marginBottom = margin;
+      markDirty();
    }
 
 /**
@@ -349,6 +362,13 @@ public class PPTextShape extends PPSimpleShape {
       return "sz='" + Math.round(100 * font.getSize2D()) + "'";
    }
 
+/*
+ * Returns the opening bodyPr tag as a string.  The shapes now write the
+ * tag with dumpBodyTag, which formats the margins directly into the
+ * stream; this method remains for subclasses that call it.
+ */
+
+   @Deprecated
    protected String getBodyTag() {
       return "<a:bodyPr vert='horz' wrap='square' " +
              "lIns='" + PPUtil.pointsToUnits(marginLeft) +
@@ -359,14 +379,25 @@ public class PPTextShape extends PPSimpleShape {
              "numCol='1' rtlCol='0' compatLnSpc='1'>";
    }
 
+   protected void dumpBodyTag(PPOutputStream os) {
+      os.print("<a:bodyPr vert='horz' wrap='square'");
+      os.printAttr("lIns", PPUtil.pointsToUnits(marginLeft));
+      os.printAttr("tIns", PPUtil.pointsToUnits(marginTop));
+      os.printAttr("rIns", PPUtil.pointsToUnits(marginRight));
+      os.printAttr("bIns", PPUtil.pointsToUnits(marginBottom));
+      os.print(" anchor='");
+      os.print(getVAlignTag());
+      os.print("' anchorCtr='0' numCol='1' rtlCol='0' compatLnSpc='1'>");
+   }
+
    protected OptionParser createOptionParser() {
       return new PPTextShapeOptionParser(this);
    }
 
    protected void fixBounds() {
       if (!boundsFixed) {
-         int width = PPUtil.getPaddedWidth(text, fm);
-         int height = fm.getHeight();
+         int width = PPUtil.getPaddedWidth(text, metrics);
+         int height = metrics.getHeight();
          Rectangle2D r = new Rectangle2D.Double(getX(), getY(), width, height);
          setBounds(r);
          boundsFixed = false;
@@ -377,7 +408,7 @@ public class PPTextShape extends PPSimpleShape {
 
    private Color color;
    private Font font;
-   private FontMetrics fm;
+   private PPFontMetrics metrics;
    private String text;
    private String hAlign;
    private String vAlign;
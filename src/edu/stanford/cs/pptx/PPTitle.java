@@ -22,7 +22,9 @@ class PPTitle extends PPTextShape {
    protected void dumpShape(PPOutputStream os) {
       os.print("<p:sp>");
       os.print("<p:nvSpPr>");
-      os.print("<p:cNvPr id='" + getShapeId() + "' name='Title 1'/>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='Title 1'/>");
       os.print("<p:cNvSpPr>");
       os.print("<a:spLocks noGrp='1'/>");
       os.print("</p:cNvSpPr>");
@@ -33,9 +35,13 @@ class PPTitle extends PPTextShape {
       os.print("<p:spPr>");
       os.print("<a:xfrm>");
       Point2D pt = getInitialLocation();
-      os.print("<a:off " + os.getOffsetTag(pt.getX(), pt.getY()) + "/>");
-      os.print("<a:ext cx='" + PPUtil.pointsToUnits(getWidth()) + "' " +
-               "cy='" + PPUtil.pointsToUnits(getHeight()) + "'/>");
+      os.print("<a:off");
+      os.printOffset(pt.getX(), pt.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(getHeight()));
+      os.print("/>");
       os.print("</a:xfrm>");
       os.print("</p:spPr>");
       os.print("<p:txBody>");
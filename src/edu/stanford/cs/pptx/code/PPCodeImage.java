@@ -8,6 +8,8 @@
 package edu.stanford.cs.pptx.code;
 
 import edu.stanford.cs.pptx.PPPicture;
+import edu.stanford.cs.pptx.util.PPFontMetrics;
+import edu.stanford.cs.pptx.util.PPOutputStream;
 import edu.stanford.cs.pptx.util.PPUtil;
 import java.awt.Color;
 import java.awt.Font;
@@ -15,8 +17,14 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * This class is a <code>PPPicture</code> subclass containing an image of
@@ -73,15 +81,45 @@ public class PPCodeImage extends PPPicture {
    }
 
 /**
- * Sets the code and finalizes the image.
+ * Sets the code and finalizes the image.  Code images with the same code
+ * and the same appearance share a single rendered image, which is stored
+ * only once when the show is saved.
  *
  * @param code An array of lines containing the code
  */
 
    public void setCode(String[] code) {
       this.code = code;
-      setImage(createCodeImage());
-      setScale(1.0 / sf);
+      updateCode();
+   }
+
+/**
+ * Sets whether the code is stored as text rather than as an image.  In
+ * text mode, each line of code becomes a paragraph in a text box with
+ * the same font, margins, and fixed line spacing, and comments appear
+ * in separate runs with their own color.  The bounds returned by
+ * <code>getCodeBounds</code> are the same in either mode, although the
+ * exact position of the text depends on the fonts available when the
+ * show is displayed.  If the code has already been set, changing the
+ * mode updates the shape.
+ *
+ * @param flag <code>true</code> to store the code as text
+ */
+
+   public void setVectorText(boolean flag) {
+      if (flag == vectorText) return;
+      vectorText = flag;
+      if (code != null) updateCode();
+   }
+
+/**
+ * Returns whether the code is stored as text rather than as an image.
+ *
+ * @return <code>true</code> if the code is stored as text
+ */
+
+   public boolean isVectorText() {
+      return vectorText;
    }
 
 /**
@@ -251,14 +289,14 @@ public class PPCodeImage extends PPPicture {
 
    public Rectangle2D getCodeBounds(int line, int p1, int p2) {
       String str = code[line];
-      String prefix = str.substring(0, p1);
-      FontMetrics fm = PPUtil.getEmptyContainer().getFontMetrics(font);
-      double x = getX() + leftMargin + fm.stringWidth(prefix) + X_DELTA;
+      PPFontMetrics metrics = PPFontMetrics.getFontMetrics(font);
+      double x = getX() + leftMargin + metrics.stringWidth(str, 0, p1) +
+                 X_DELTA;
       double y = getY() + topMargin + line * spacing + Y_DELTA;
-      str = str.substring(p1, p2);
-      double width = fm.stringWidth(str) + W_DELTA;
+      double width = metrics.stringWidth(str, p1, p2) + W_DELTA;
       double height = spacing + H_DELTA;
-      if (str.endsWith(")") || str.endsWith("]") || str.endsWith("}")) {
+      char last = (p2 > p1) ? str.charAt(p2 - 1) : ' ';
+      if (last == ')' || last == ']' || last == '}') {
          width += P_DELTA;
       }
       return new Rectangle2D.Double(x, y, width, height);
@@ -331,8 +369,199 @@ public class PPCodeImage extends PPPicture {
       }
    }
 
+   @Override
+   protected void dumpShape(PPOutputStream os) {
+      if (!vectorText) {
+         super.dumpShape(os);
+         return;
+      }
+      os.print("<p:sp>");
+      os.print("<p:nvSpPr>");
+      os.print("<p:cNvPr");
+      os.printAttr("id", getShapeId());
+      os.print(" name='" + getName() + "'/>");
+      os.print("<p:cNvSpPr txBox='1'/>");
+      os.print("<p:nvPr/>");
+      os.print("</p:nvSpPr>");
+      os.print("<p:spPr>");
+      os.print("<a:xfrm>");
+      Point2D pt = getInitialLocation();
+      os.print("<a:off");
+      os.printOffset(pt.getX(), pt.getY());
+      os.print("/>");
+      os.print("<a:ext");
+      os.printAttr("cx", PPUtil.pointsToUnits(getWidth()));
+      os.printAttr("cy", PPUtil.pointsToUnits(getHeight()));
+      os.print("/>");
+      os.print("</a:xfrm>");
+      os.print("<a:prstGeom prst='rect'>");
+      os.print("<a:avLst/>");
+      os.print("</a:prstGeom>");
+      if (bg == null) {
+         os.print("<a:noFill/>");
+      } else {
+         os.print("<a:solidFill>" + PPUtil.getColorTag(bg) + "</a:solidFill>");
+      }
+      os.print("</p:spPr>");
+      os.print("<p:txBody>");
+      os.print("<a:bodyPr wrap='none' rIns='0' bIns='0' anchor='t'");
+      os.printAttr("lIns", PPUtil.pointsToUnits(leftMargin));
+      os.printAttr("tIns", PPUtil.pointsToUnits(topMargin));
+      os.print("><a:noAutofit/></a:bodyPr>");
+      os.print("<a:lstStyle/>");
+      boolean inComment = false;
+      int nLines = (code == null) ? 0 : code.length;
+      for (int i = 0; i < nLines; i++) {
+         os.print("<a:p>");
+         os.print("<a:pPr>");
+         os.print("<a:lnSpc><a:spcPts");
+         os.printAttr("val", (int) Math.round(100 * spacing));
+         os.print("/></a:lnSpc>");
+         os.print("<a:spcBef><a:spcPts val='0'/></a:spcBef>");
+         os.print("<a:spcAft><a:spcPts val='0'/></a:spcAft>");
+         os.print("</a:pPr>");
+         inComment = dumpCodeLine(os, code[i], inComment);
+         os.print("<a:endParaRPr lang='en-US' " + getSizeTag() + "/>");
+         os.print("</a:p>");
+      }
+      os.print("</p:txBody>");
+      os.print("</p:sp>");
+   }
+
+   @Override
+   protected void dumpShapeRels(PPOutputStream os) {
+      if (!vectorText) super.dumpShapeRels(os);
+   }
+
+   @Override
+   protected void collectPictures(ArrayList<PPPicture> pictures) {
+      if (!vectorText) super.collectPictures(pictures);
+   }
+
 /* Private methods */
 
+/*
+ * Writes the runs for one line of code in text mode, using the same rules
+ * for comments as paintCodeImage, and returns whether the line ends
+ * inside a block comment.
+ */
+
+   private boolean dumpCodeLine(PPOutputStream os, String line,
+                                boolean inComment) {
+      int start = 0;
+      int n = line.length();
+      while (start < n) {
+         if (inComment) {
+            int starSlash = line.indexOf("*" + "/", start);
+            int end = (starSlash == -1) ? n : starSlash + 2;
+            dumpCodeRun(os, line.substring(start, end), Color.BLUE);
+            inComment = starSlash == -1;
+            start = end;
+         } else {
+            int slashSlash = line.indexOf("/" + "/", start);
+            int slashStar = line.indexOf("/" + "*", start);
+            if (slashSlash != -1 &&
+                (slashStar == -1 || slashSlash < slashStar)) {
+               dumpCodeRun(os, line.substring(start, slashSlash),
+                           Color.BLACK);
+               dumpCodeRun(os, line.substring(slashSlash), Color.BLUE);
+               start = n;
+            } else if (slashStar != -1) {
+               dumpCodeRun(os, line.substring(start, slashStar),
+                           Color.BLACK);
+               inComment = true;
+               start = slashStar;
+            } else {
+               dumpCodeRun(os, line.substring(start), Color.BLACK);
+               start = n;
+            }
+         }
+      }
+      return inComment;
+   }
+
+   private void dumpCodeRun(PPOutputStream os, String text, Color color) {
+      if (text.isEmpty()) return;
+      os.print("<a:r>");
+      os.print("<a:rPr lang='en-US' " + getSizeTag() +
+               (font.isBold() ? " b='1'" : " b='0'") +
+               (font.isItalic() ? " i='1'" : " i='0'") + ">");
+      os.print("<a:solidFill>" + PPUtil.getColorTag(color) + "</a:solidFill>");
+      os.print("<a:latin typeface='" + escapeXML(font.getName()) + "'/>");
+      os.print("</a:rPr>");
+      os.print("<a:t>" + escapeXML(text) + "</a:t>");
+      os.print("</a:r>");
+   }
+
+   private String getSizeTag() {
+      return "sz='" + Math.round(100 * font.getSize2D()) + "'";
+   }
+
+   private static String escapeXML(String str) {
+      StringBuilder sb = new StringBuilder();
+      int n = str.length();
+      for (int i = 0; i < n; i++) {
+         char ch = str.charAt(i);
+         switch (ch) {
+          case '<': sb.append("&lt;"); break;
+          case '&': sb.append("&amp;"); break;
+          case '>': sb.append("&gt;"); break;
+          case '\'': sb.append("&apos;"); break;
+          case '"': sb.append("&quot;"); break;
+          default: sb.append(ch); break;
+         }
+      }
+      return sb.toString();
+   }
+
+/*
+ * Sets up the shape for the current code.  In image mode, the picture
+ * shows the rendered image scaled down to the size of the box.  In text
+ * mode, the image is not used and the bounds are the size of the box.
+ */
+
+   private void updateCode() {
+      if (vectorText) {
+         setBounds(getX(), getY(), width, height);
+      } else {
+         setImage(getCodeImage());
+         setScale(1.0 / sf);
+      }
+   }
+
+/*
+ * Returns the rendered image for the current code and settings, using a
+ * cached image if an identical listing has been rendered recently.  Only
+ * images painted by this class itself are cached, since a subclass that
+ * overrides paintCodeImage may paint from state that the key does not
+ * include.  The key copies the code so that later changes to the
+ * caller's array do not affect it.  The lock is held only to look up
+ * and store images, never while an image is rendered; when the cache is
+ * full, the least recently used image is evicted.
+ */
+
+   private Image getCodeImage() {
+      if (getClass() != PPCodeImage.class) return createCodeImage();
+      List<Object> key = Arrays.asList(new Object[] {
+         Arrays.asList(code.clone()), font, bg,
+         width, height, spacing, leftMargin, topMargin, sf
+      });
+      synchronized (imageCache) {
+         Image image = imageCache.get(key);
+         if (image != null) return image;
+      }
+      Image image = createCodeImage();
+      synchronized (imageCache) {
+         imageCache.put(key, image);
+         Iterator<Image> iterator = imageCache.values().iterator();
+         while (imageCache.size() > IMAGE_CACHE_SIZE) {
+            iterator.next();
+            iterator.remove();
+         }
+      }
+      return image;
+   }
+
    private Image createCodeImage() {
       int iw = (int) (sf * width + 0.99);
       int ih = (int) (sf * height + 0.99);
@@ -362,12 +591,14 @@ public class PPCodeImage extends PPPicture {
    private static final double P_DELTA = -2;
    private static final double X_DELTA = -3;
    private static final double Y_DELTA = -1;
+   private static final int IMAGE_CACHE_SIZE = 8;
 
 /* Private instance variables */
 
    private Color bg;
    private Font font;
    private String[] code;
+   private boolean vectorText;
    private double height;
    private double leftMargin;
    private double sf;
@@ -377,4 +608,9 @@ public class PPCodeImage extends PPPicture {
    private double x0;
    private double y0;
 
+/* Static variables */
+
+   private static LinkedHashMap<List<Object>,Image> imageCache =
+      new LinkedHashMap<List<Object>,Image>(16, 0.75F, true);
+
 }
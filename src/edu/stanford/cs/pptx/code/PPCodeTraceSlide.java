@@ -7,6 +7,7 @@
 
 package edu.stanford.cs.pptx.code;
 
+import edu.stanford.cs.pptx.PPShape;
 import edu.stanford.cs.pptx.PPSlide;
 import java.awt.Font;
 import java.awt.geom.Rectangle2D;
@@ -280,6 +281,34 @@ public class PPCodeTraceSlide extends PPSlide implements ChangeListener {
       return font;
    }
 
+/**
+ * Sets whether the code in the stack frames of this trace is stored as
+ * text rather than as images, which makes the saved show much smaller.
+ * The setting applies both to the frames already on the slide and to
+ * those created later.
+ *
+ * @param flag <code>true</code> to store the code as text
+ */
+
+   public void setVectorText(boolean flag) {
+      vectorText = flag;
+      for (PPShape shape : getShapes()) {
+         if (shape instanceof PPStackFrame) {
+            ((PPStackFrame) shape).setVectorText(flag);
+         }
+      }
+   }
+
+/**
+ * Returns whether the code in the stack frames is stored as text.
+ *
+ * @return <code>true</code> if the code is stored as text
+ */
+
+   public boolean isVectorText() {
+      return vectorText;
+   }
+
 /**
  * Allocates a new heap word.
  *
@@ -362,6 +391,7 @@ public class PPCodeTraceSlide extends PPSlide implements ChangeListener {
    private Rectangle2D frameRegion;
    private Stack<PPStackFrame> stack;
    private TreeMap<String,PPFunction> functions;
+   private boolean vectorText;
    private double frameHeight;
    private double spacing;
    private int maxDepth;
@@ -9,10 +9,10 @@ package edu.stanford.cs.pptx.code;
 import edu.stanford.cs.pptx.PPGroup;
 import edu.stanford.cs.pptx.PPSlide;
 import edu.stanford.cs.pptx.PPTextBox;
+import edu.stanford.cs.pptx.util.PPFontMetrics;
 import edu.stanford.cs.pptx.util.PPUtil;
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.FontMetrics;
 
 /**
  * This class represents a console window in the <code>pptx.code</code>
@@ -84,12 +84,12 @@ public class PPConsole extends PPGroup {
       PPSlide slide = getSlide();
       PPTextBox tb = new PPTextBox();
       tb.setFont(font);
-      FontMetrics fm = tb.getFontMetrics();
+      PPFontMetrics metrics = PPFontMetrics.getFontMetrics(font);
       String str = obj.toString();
       tb.setText(str);
       tb.setBounds(getX() + leftMargin, getY() + cy,
-                   PPUtil.getPaddedWidth(str, fm), fm.getHeight());
-      cy += fm.getHeight();
+                   PPUtil.getPaddedWidth(str, metrics), metrics.getHeight());
+      cy += metrics.getHeight();
       slide.add(tb);
       if (options != null && !options.isEmpty()) {
          tb.addAnimation(options);
@@ -121,12 +121,12 @@ public class PPConsole extends PPGroup {
       PPSlide slide = getSlide();
       PPTextBox tb = new PPTextBox();
       tb.setFont(font);
-      FontMetrics fm = tb.getFontMetrics();
+      PPFontMetrics metrics = PPFontMetrics.getFontMetrics(font);
       tb.setText(prompt);
       double x0 = leftMargin;
-      double x1 = x0 + fm.stringWidth(prompt);
-      double pWidth = PPUtil.getPaddedWidth(prompt, fm);
-      tb.setBounds(getX() + x0, getY() + cy, pWidth, fm.getHeight());
+      double x1 = x0 + metrics.stringWidth(prompt);
+      double pWidth = PPUtil.getPaddedWidth(prompt, metrics);
+      tb.setBounds(getX() + x0, getY() + cy, pWidth, metrics.getHeight());
       slide.add(tb);
       if (options != null && !options.isEmpty()) {
          tb.addAnimation(options);
@@ -135,11 +135,11 @@ public class PPConsole extends PPGroup {
       tb.setFont(font);
       tb.setFontColor(INPUT_COLOR);
       tb.setText(input);
-      double iWidth = PPUtil.getPaddedWidth(input, fm);
-      tb.setBounds(getX() + x1, getY() + cy, iWidth, fm.getHeight());
+      double iWidth = PPUtil.getPaddedWidth(input, metrics);
+      tb.setBounds(getX() + x1, getY() + cy, iWidth, metrics.getHeight());
       slide.add(tb);
       tb.addAnimation("Appear/onClick");
-      cy += fm.getHeight();
+      cy += metrics.getHeight();
    }
 
 /**
@@ -418,6 +418,7 @@ public abstract class PPFunction {
       PPStackFrame frame = new PPStackFrame(bb);
       frame.setFont(getFont());
       frame.setSpacing(getSpacing());
+      frame.setVectorText(slide.isVectorText());
       return frame;
    }
       
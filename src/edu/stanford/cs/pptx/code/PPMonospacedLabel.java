@@ -11,6 +11,7 @@ package edu.stanford.cs.pptx.code;
 
 import edu.stanford.cs.pptx.PPGroup;
 import edu.stanford.cs.pptx.PPTextBox;
+import edu.stanford.cs.pptx.util.PPFontMetrics;
 import java.awt.Font;
 
 class PPMonospacedLabel extends PPGroup {
@@ -20,12 +21,10 @@ class PPMonospacedLabel extends PPGroup {
    }
 
    public PPMonospacedLabel(String text, Font font, String unit) {
-      PPTextBox box = new PPTextBox(text);
-      box.setFont(font);
-      charWidth = box.getFontMetrics().stringWidth(unit);
+      charWidth = PPFontMetrics.getFontMetrics(font).stringWidth(unit);
       int nc = text.length();
       for (int i = 0; i < nc; i++) {
-         box = new PPTextBox(text.substring(i, i + 1));
+         PPTextBox box = new PPTextBox(text.substring(i, i + 1));
          box.setFont(font);
          box.setVerticalAlignment("Middle");
          box.setHorizontalAlignment("Center");
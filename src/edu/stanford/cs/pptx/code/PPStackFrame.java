@@ -183,6 +183,17 @@ public class PPStackFrame extends PPGroup {
       codeImage.setTopMargin(margin);
    }
 
+/**
+ * Sets whether the code is stored as text rather than as an image.  The
+ * setting may be changed after the code has been set.
+ *
+ * @param flag <code>true</code> to store the code as text
+ */
+
+   public void setVectorText(boolean flag) {
+      codeImage.setVectorText(flag);
+   }
+
 /**
  * Returns the rectangular region that bounds the specified line.
  *
@@ -11,24 +11,31 @@ import edu.stanford.cs.pptx.PPShape;
 import edu.stanford.cs.pptx.PPSlide;
 import edu.stanford.cs.pptx.util.PPOutputStream;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AnimationEffect extends OptionParser {
 
    protected AnimationEffect(String name) {
       delay = 0;
       duration = 0;
+      preOptionHook();
    }
 
    public void resetState() {
       /* Empty */
    }
 
+   public void setShape(PPShape shape) {
+      this.shape = shape;
+   }
+
    public PPShape getShape() {
       return shape;
    }
 
    public void setAnimationType(String type) {
       effectType = type;
+      markChanged();
    }
 
    public String getAnimationType() {
@@ -37,6 +44,7 @@ public class AnimationEffect extends OptionParser {
 
    public void setDirection(String dir) {
       direction = dir;
+      markChanged();
    }
 
    public String getDirection() {
@@ -45,6 +53,7 @@ public class AnimationEffect extends OptionParser {
 
    public void setTrigger(String trigger) {
       this.trigger = trigger;
+      markChanged();
    }
 
    public String getTrigger() {
@@ -53,6 +62,7 @@ public class AnimationEffect extends OptionParser {
 
    public void setDelay(double delay) {
       this.delay = delay;
+      markChanged();
    }
 
    public double getDelay() {
@@ -65,6 +75,7 @@ public class AnimationEffect extends OptionParser {
 
    public void setDuration(double duration) {
       this.duration = duration;
+      markChanged();
    }
 
    public double getDuration() {
@@ -80,36 +91,79 @@ public class AnimationEffect extends OptionParser {
       }
    }
 
-   public void onClickKey(String value) {
+/*
+ * The following methods set the trigger and timing of an effect that is
+ * created directly rather than from an option string, as in
+ *
+ *    shape.animate(FlyInEffect.fromLeft().afterPrevious().duration(0.5));
+ *
+ * Each method returns the effect so that the calls can be chained.  The
+ * methods for the options of a particular effect return that effect and
+ * must therefore come before these in a chain.  An effect may still be
+ * changed after it has been added to a shape, in which case the methods
+ * mark the slide as changed so that an incremental save writes it again.
+ */
+
+   public AnimationEffect onClick() {
       trigger = "onClick";
+      markChanged();
+      return this;
    }
 
-   public void withPreviousKey(String value) {
+   public AnimationEffect withPrevious() {
       trigger = "withPrev";
+      markChanged();
+      return this;
+   }
+
+   public AnimationEffect afterPrevious() {
+      trigger = "afterPrev";
+      markChanged();
+      return this;
+   }
+
+   public AnimationEffect delay(double delay) {
+      this.delay = delay;
+      markChanged();
+      return this;
+   }
+
+   public AnimationEffect duration(double duration) {
+      this.duration = duration;
+      markChanged();
+      return this;
+   }
+
+   public void onClickKey(String value) {
+      onClick();
+   }
+
+   public void withPreviousKey(String value) {
+      withPrevious();
    }
 
    public void withPrevKey(String value) {
-      trigger = "withPrev";
+      withPrevious();
    }
 
    public void afterPreviousKey(String value) {
-      trigger = "afterPrev";
+      afterPrevious();
    }
 
    public void afterPrevKey(String value) {
-      trigger = "afterPrev";
+      afterPrevious();
    }
 
    public void delayKey(String value) {
-      delay = Double.parseDouble(value);
+      delay(Double.parseDouble(value));
    }
 
    public void durationKey(String value) {
-      duration = parseDuration(value);
+      duration(parseDuration(value));
    }
 
    public void durKey(String value) {
-      duration = parseDuration(value);
+      duration(parseDuration(value));
    }
 
    private double parseDuration(String str) {
@@ -138,15 +192,21 @@ public class AnimationEffect extends OptionParser {
 
    public void dumpAnimation(PPOutputStream os, double startT) {
       os.print("<p:par>");
-      String delayTag = "delay='" + (int) Math.round(1000 * delay) +"'";
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getPresetTag() + " fill='hold' " +
-               "grpId='" + os.getNextGroupId() + "' " +
-               "nodeType='" + getTriggerTag() + "'>");
+      String delayTag = ZERO_DELAY_TAG;
+      if (delay != 0) {
+         delayTag = "delay='" + (int) Math.round(1000 * delay) + "'";
+      }
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" " + getPresetTag() + " fill='hold'");
+      os.printAttr("grpId", os.getNextGroupId());
+      os.print(" nodeType='" + getTriggerTag() + "'>");
       os.print("<p:stCondLst>");
       if (trigger != null && trigger.equals("afterPrev")) {
-         os.print("<p:cond " + delayTag + "/>");
-         delayTag = "delay='0'";
+         os.print("<p:cond ");
+         os.print(delayTag);
+         os.print("/>");
+         delayTag = ZERO_DELAY_TAG;
       } else {
          os.print("<p:cond delay='0'/>");
       }
@@ -158,35 +218,67 @@ public class AnimationEffect extends OptionParser {
       os.print("</p:par>");
    }
 
+   @Override
+   public void postOptionHook() {
+      super.postOptionHook();
+      markChanged();
+   }
+
 /* Protected methods */
 
+/*
+ * Marks the slide that contains the shape as changed.  Every method that
+ * changes an effect calls this method, which does nothing until the
+ * effect has been added to a shape on a slide.
+ */
+
+   protected void markChanged() {
+      PPSlide slide = (shape == null) ? null : shape.getSlide();
+      if (slide != null) slide.markDirty();
+   }
+
    protected String getDurationTag() {
       return "dur='" + (int) Math.round(1000 * getDuration()) +"'";
    }
 
+/*
+ * Writes the duration attribute directly to the stream, which avoids the
+ * string that getDurationTag creates.  The attribute has a leading space.
+ */
+
+   protected void printDuration(PPOutputStream os) {
+      os.printAttr("dur", (int) Math.round(1000 * getDuration()));
+   }
+
 /* Static methods */
 
    public static AnimationEffect createEffect(String options, PPShape shape) {
       int slash = options.indexOf('/');
       if (slash == -1) slash = options.length();
       String effectName = options.substring(0, slash);
-      String className = AnimationEffect.class.getName();
-      className = className.substring(0, className.lastIndexOf('.') + 1) +
-                  effectName + "Effect";
-      try {
-         Class<?> effectClass = Class.forName(className);
-         AnimationEffect effect = (AnimationEffect) effectClass.newInstance();
-         effect.parseOptions(options.substring(slash));
-         effect.shape = shape;
-         return effect;
-      } catch (ClassNotFoundException ex) {
+      AnimationEffect effect = null;
+      EffectFactory factory = effectFactories.get(effectName);
+      if (factory != null) {
+         effect = factory.createEffect();
+      } else {
+         effect = createStandardEffect(effectName);
+      }
+      if (effect == null) {
          throw new RuntimeException("Effect " + effectName +
                                     " is not yet implemented");
-      } catch (InstantiationException ex) {
-         throw new RuntimeException(ex);
-      } catch (IllegalAccessException ex) {
-         throw new RuntimeException(ex);
       }
+      effect.parseOptions(options.substring(slash));
+      effect.shape = shape;
+      return effect;
+   }
+
+/*
+ * Registers a factory for the effect with the specified name, which is
+ * used in place of any standard effect with that name.
+ */
+
+   public static void registerEffect(String name, EffectFactory factory) {
+      effectFactories.put(name, factory);
    }
 
    public static void updateAnimations(PPSlide slide,
@@ -224,8 +316,9 @@ public class AnimationEffect extends OptionParser {
             t = startT = nextT + effect.getDelay();
             nextT = startT + effect.getDuration();
             os.print("<p:par>");
-            os.print("<p:cTn id='" + os.getNextSequenceId() +
-                     "' fill='hold'>");
+            os.print("<p:cTn");
+            os.printAttr("id", os.getNextSequenceId());
+            os.print(" fill='hold'>");
             os.print("<p:stCondLst>");
             if (i == 0) {
                os.print("<p:cond delay='indefinite'/>");
@@ -240,8 +333,9 @@ public class AnimationEffect extends OptionParser {
             currentDepth++;
             if (i == 0) {
                os.print("<p:par>");
-               os.print("<p:cTn id='" + os.getNextSequenceId() +
-                        "' fill='hold'>");
+               os.print("<p:cTn");
+               os.printAttr("id", os.getNextSequenceId());
+               os.print(" fill='hold'>");
                os.print("<p:stCondLst>");
                os.print("<p:cond delay='0'/>");
                os.print("</p:stCondLst>");
@@ -252,15 +346,17 @@ public class AnimationEffect extends OptionParser {
             t = startT = 0;
             nextT = startT + effect.getDuration();
             os.print("<p:par>");
-            os.print("<p:cTn id='" + os.getNextSequenceId() +
-                     "' fill='hold'>");
+            os.print("<p:cTn");
+            os.printAttr("id", os.getNextSequenceId());
+            os.print(" fill='hold'>");
             os.print("<p:stCondLst>");
             os.print("<p:cond delay='indefinite'/>");
             os.print("</p:stCondLst>");
             os.print("<p:childTnLst>");
             os.print("<p:par>");
-            os.print("<p:cTn id='" + os.getNextSequenceId() +
-                     "' fill='hold'>");
+            os.print("<p:cTn");
+            os.printAttr("id", os.getNextSequenceId());
+            os.print(" fill='hold'>");
             os.print("<p:stCondLst>");
             os.print("<p:cond delay='0'/>");
             os.print("</p:stCondLst>");
@@ -282,13 +378,54 @@ public class AnimationEffect extends OptionParser {
       if (!list.isEmpty()) {
          os.print("<p:bldLst>");
          for (AnimationEffect effect : list) {
-            os.print("<p:bldP spid='" + effect.getShape().getShapeId() +
-                     "' grpId='" + os.getNextGroupId() + "' animBg='1'/>");
+            os.print("<p:bldP");
+            os.printAttr("spid", effect.getShape().getShapeId());
+            os.printAttr("grpId", os.getNextGroupId());
+            os.print(" animBg='1'/>");
          }
          os.print("</p:bldLst>");
       }
    }
 
+/* Private static methods */
+
+/*
+ * Creates the standard effect with the specified name, or returns null if
+ * there is no such effect.  Each effect named Xxx is implemented by the
+ * class XxxEffect in this package.
+ */
+
+   private static AnimationEffect createStandardEffect(String name) {
+      switch (name) {
+       case "Appear": return new AppearEffect();
+       case "BezierMotion": return new BezierMotionEffect();
+       case "ChangeFillColor": return new ChangeFillColorEffect();
+       case "ChangeLineColor": return new ChangeLineColorEffect();
+       case "CheckerboardIn": return new CheckerboardInEffect();
+       case "CheckerboardOut": return new CheckerboardOutEffect();
+       case "Disappear": return new DisappearEffect();
+       case "FadeIn": return new FadeInEffect();
+       case "FadeOut": return new FadeOutEffect();
+       case "FadedZoomIn": return new FadedZoomInEffect();
+       case "FadedZoomOut": return new FadedZoomOutEffect();
+       case "FlyIn": return new FlyInEffect();
+       case "FlyOut": return new FlyOutEffect();
+       case "Grow": return new GrowEffect();
+       case "LinearMotion": return new LinearMotionEffect();
+       case "Shrink": return new ShrinkEffect();
+       case "Spin": return new SpinEffect();
+       case "WipeIn": return new WipeInEffect();
+       case "WipeOut": return new WipeOutEffect();
+       case "ZoomIn": return new ZoomInEffect();
+       case "ZoomOut": return new ZoomOutEffect();
+       default: return null;
+      }
+   }
+
+/* Private constants */
+
+   private static final String ZERO_DELAY_TAG = "delay='0'";
+
 /* Private instance variables */
 
    private PPShape shape;
@@ -298,4 +435,9 @@ public class AnimationEffect extends OptionParser {
    private double duration;
    private double delay;
 
+/* Static variables */
+
+   private static ConcurrentHashMap<String,EffectFactory> effectFactories =
+      new ConcurrentHashMap<String,EffectFactory>();
+
 }
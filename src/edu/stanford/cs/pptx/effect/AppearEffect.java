@@ -44,14 +44,19 @@ public class AppearEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
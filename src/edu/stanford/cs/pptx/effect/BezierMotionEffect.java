@@ -1,7 +1,7 @@
 /*
  * File: BezierMotionEffect.java
  * -----------------------------
- * Represents a linear motion effect.
+ * Represents a motion effect along a Bezier curve.
  */
 
 package edu.stanford.cs.pptx.effect;
@@ -20,6 +20,65 @@ public class BezierMotionEffect extends AnimationEffect {
       sy = 1.0 / PPShow.HEIGHT;
    }
 
+/*
+ * Creates a motion effect that moves the shape along a Bezier curve.  The
+ * two control points and the end of the curve are given as displacements
+ * from the location at which the curve starts.  Unless a speed or duration
+ * is set, the shape moves at the speed of its motion path.
+ */
+
+   public static BezierMotionEffect through(double dx1, double dy1,
+                                            double dx2, double dy2,
+                                            double dx3, double dy3) {
+      BezierMotionEffect effect = new BezierMotionEffect();
+      effect.dx1 = dx1;
+      effect.dy1 = dy1;
+      effect.dx2 = dx2;
+      effect.dy2 = dy2;
+      effect.dx3 = dx3;
+      effect.dy3 = dy3;
+      return effect;
+   }
+
+   public BezierMotionEffect speed(double pixelsPerSecond) {
+      speed = pixelsPerSecond;
+      markChanged();
+      return this;
+   }
+
+   public BezierMotionEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public BezierMotionEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
+/*
+ * Returns the speed set for this effect, or a negative value if the
+ * effect moves at the speed of its motion path.
+ */
+
+   public double getSpeed() {
+      return speed;
+   }
+
+/*
+ * Returns the displacement from the start of the curve to its end.
+ */
+
+   public double getDX() {
+      return dx3;
+   }
+
+   public double getDY() {
+      return dy3;
+   }
+
    public void setState(MotionPathState state) {
       mpState = state;
    }
@@ -61,14 +120,20 @@ public class BezierMotionEffect extends AnimationEffect {
                "path='" + getMotionString(x0, y0) + "' " +
                "pathEditMode='relative' ptsTypes='AA'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_x</p:attrName>");
@@ -119,15 +184,15 @@ public class BezierMotionEffect extends AnimationEffect {
    }
 
    public void speedKey(String value) {
-      speed = Double.parseDouble(value);
+      speed(Double.parseDouble(value));
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
@@ -34,6 +34,7 @@ package edu.stanford.cs.pptx.effect;
 
 import edu.stanford.cs.pptx.util.PPOutputStream;
 import edu.stanford.cs.pptx.util.PPUtil;
+import java.awt.Color;
 
 public class ChangeFillColorEffect extends AnimationEffect {
 
@@ -41,12 +42,28 @@ public class ChangeFillColorEffect extends AnimationEffect {
       super("ChangeFillColor");
    }
 
+/*
+ * These methods create a ChangeFillColor effect that changes the fill color
+ * of the shape to the specified color.  The string form accepts the same
+ * color names as the option string.
+ */
+
+   public static ChangeFillColorEffect to(Color color) {
+      ChangeFillColorEffect effect = new ChangeFillColorEffect();
+      effect.color = color;
+      return effect;
+   }
+
+   public static ChangeFillColorEffect to(String color) {
+      return to(PPUtil.decodeColor(color));
+   }
+
    public void preOptionHook() {
       setDuration("0.001");
    }
 
    public void colorKey(String value) {
-      colorName = value;
+      color = PPUtil.decodeColor(value);
    }
 
    @Override
@@ -58,27 +75,37 @@ public class ChangeFillColorEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:animClr clrSpc='rgb'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>fillcolor</p:attrName>");
       os.print("</p:attrNameLst>");
       os.print("</p:cBhvr>");
-      os.print("<p:to>" + PPUtil.getColorTag(colorName) + "</p:to>");
+      os.print("<p:to>" + PPUtil.getColorTag(color) + "</p:to>");
       os.print("</p:animClr>");
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>fill.type</p:attrName>");
@@ -90,10 +117,14 @@ public class ChangeFillColorEffect extends AnimationEffect {
       os.print("</p:set>");
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>fill.on</p:attrName>");
@@ -107,6 +138,6 @@ public class ChangeFillColorEffect extends AnimationEffect {
 
 /* Private instance variables */
 
-   private String colorName;
+   private Color color;
 
 }
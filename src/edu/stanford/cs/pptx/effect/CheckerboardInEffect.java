@@ -43,6 +43,23 @@ public class CheckerboardInEffect extends AnimationEffect {
       super("CheckerboardIn");
    }
 
+/*
+ * Each of these methods creates a CheckerboardIn effect that proceeds in the
+ * indicated direction.
+ */
+
+   public static CheckerboardInEffect across() {
+      CheckerboardInEffect effect = new CheckerboardInEffect();
+      effect.acrossKey(null);
+      return effect;
+   }
+
+   public static CheckerboardInEffect down() {
+      CheckerboardInEffect effect = new CheckerboardInEffect();
+      effect.downKey(null);
+      return effect;
+   }
+
    @Override
    public String getPresetTag() {
       return "presetID='5' presetClass='entr' presetSubtype='10'";
@@ -52,14 +69,19 @@ public class CheckerboardInEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
@@ -70,10 +92,14 @@ public class CheckerboardInEffect extends AnimationEffect {
       os.print("<p:animEffect transition='in' filter='checkerboard(" +
                getDirection() + ")'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + "/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print("/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("</p:animEffect>");
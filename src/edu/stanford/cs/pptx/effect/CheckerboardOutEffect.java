@@ -43,6 +43,23 @@ public class CheckerboardOutEffect extends AnimationEffect {
       super("CheckerboardOut");
    }
 
+/*
+ * Each of these methods creates a CheckerboardOut effect that proceeds in the
+ * indicated direction.
+ */
+
+   public static CheckerboardOutEffect across() {
+      CheckerboardOutEffect effect = new CheckerboardOutEffect();
+      effect.acrossKey(null);
+      return effect;
+   }
+
+   public static CheckerboardOutEffect down() {
+      CheckerboardOutEffect effect = new CheckerboardOutEffect();
+      effect.downKey(null);
+      return effect;
+   }
+
    @Override
    public String getPresetTag() {
       return "presetID='5' presetClass='exit' presetSubtype='10'";
@@ -53,28 +70,37 @@ public class CheckerboardOutEffect extends AnimationEffect {
       os.print("<p:animEffect transition='out' filter='checkerboard(" +
                getDirection() + ")'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + ">");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(">");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("</p:animEffect>");
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
       os.print("<p:cond delay='" + Math.round(1000 * getDuration() - 1) +
                "'/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
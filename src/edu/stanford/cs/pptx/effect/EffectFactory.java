@@ -0,0 +1,34 @@
+/*
+ * File: EffectFactory.java
+ * ------------------------
+ * This interface creates animation effects for the effect registry.
+ */
+
+package edu.stanford.cs.pptx.effect;
+
+/**
+ * This interface is implemented by objects that create animation effects.
+ * An application can add an effect of its own by registering a factory
+ * under the name used in option strings:
+ *
+ *<pre>
+ *    AnimationEffect.registerEffect("Pulse", new EffectFactory() {
+ *       public AnimationEffect createEffect() {
+ *          return new PulseEffect();
+ *       }
+ *    });
+ *</pre>
+ */
+
+public interface EffectFactory {
+
+/**
+ * Creates a new effect with its default settings.  The options and the
+ * shape are applied by the caller.
+ *
+ * @return A new <code>AnimationEffect</code>
+ */
+
+   public AnimationEffect createEffect();
+
+}
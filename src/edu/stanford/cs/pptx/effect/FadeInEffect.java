@@ -37,6 +37,23 @@ public class FadeInEffect extends AnimationEffect {
       super("FadeIn");
    }
 
+/*
+ * Each of these methods creates a FadeIn effect that proceeds in the
+ * indicated direction.
+ */
+
+   public static FadeInEffect across() {
+      FadeInEffect effect = new FadeInEffect();
+      effect.acrossKey(null);
+      return effect;
+   }
+
+   public static FadeInEffect down() {
+      FadeInEffect effect = new FadeInEffect();
+      effect.downKey(null);
+      return effect;
+   }
+
    @Override
    public String getPresetTag() {
       return "presetID='10' presetClass='entr' presetSubtype='10'";
@@ -46,14 +63,19 @@ public class FadeInEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
@@ -63,10 +85,14 @@ public class FadeInEffect extends AnimationEffect {
       os.print("</p:set>");
       os.print("<p:animEffect transition='in' filter='fade'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + "/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print("/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("</p:animEffect>");
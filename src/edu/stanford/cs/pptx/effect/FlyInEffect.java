@@ -67,6 +67,71 @@ public class FlyInEffect extends AnimationEffect {
       super("FlyIn");
    }
 
+/*
+ * Each of these methods creates a FlyIn effect that brings the shape in
+ * from the indicated direction.
+ */
+
+   public static FlyInEffect fromTop() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromTopKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromRight() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromRightKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromTopRight() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromTopRightKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromBottom() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromBottomKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromBottomRight() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromBottomRightKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromLeft() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromLeftKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromTopLeft() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromTopLeftKey(null);
+      return effect;
+   }
+
+   public static FlyInEffect fromBottomLeft() {
+      FlyInEffect effect = new FlyInEffect();
+      effect.fromBottomLeftKey(null);
+      return effect;
+   }
+
+   public FlyInEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public FlyInEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
    @Override
    public String getPresetTag() {
       String tag = "presetID='2' presetClass='entr'";
@@ -80,14 +145,19 @@ public class FlyInEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
@@ -97,10 +167,14 @@ public class FlyInEffect extends AnimationEffect {
       os.print("</p:set>");
       os.print("<p:anim calcmode='lin' valueType='num'>");
       os.print("<p:cBhvr additive='base'>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_x</p:attrName>");
@@ -121,10 +195,14 @@ public class FlyInEffect extends AnimationEffect {
       os.print("</p:anim>");
       os.print("<p:anim calcmode='lin' valueType='num'>");
       os.print("<p:cBhvr additive='base'>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_y</p:attrName>");
@@ -199,11 +277,11 @@ public class FlyInEffect extends AnimationEffect {
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
@@ -67,6 +67,71 @@ public class FlyOutEffect extends AnimationEffect {
       super("FlyOut");
    }
 
+/*
+ * Each of these methods creates a FlyOut effect that moves the shape off
+ * in the indicated direction.
+ */
+
+   public static FlyOutEffect toTop() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toTopKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toRight() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toRightKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toTopRight() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toTopRightKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toBottom() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toBottomKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toBottomRight() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toBottomRightKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toLeft() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toLeftKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toTopLeft() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toTopLeftKey(null);
+      return effect;
+   }
+
+   public static FlyOutEffect toBottomLeft() {
+      FlyOutEffect effect = new FlyOutEffect();
+      effect.toBottomLeftKey(null);
+      return effect;
+   }
+
+   public FlyOutEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public FlyOutEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
    @Override
    public String getPresetTag() {
       String tag = "presetID='2' presetClass='exit'";
@@ -80,10 +145,14 @@ public class FlyOutEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:anim calcmode='lin' valueType='num'>");
       os.print("<p:cBhvr additive='base'>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_x</p:attrName>");
@@ -104,10 +173,14 @@ public class FlyOutEffect extends AnimationEffect {
       os.print("</p:anim>");
       os.print("<p:anim calcmode='lin' valueType='num'>");
       os.print("<p:cBhvr additive='base'>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_y</p:attrName>");
@@ -128,15 +201,18 @@ public class FlyOutEffect extends AnimationEffect {
       os.print("</p:anim>");
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
       os.print("<p:cond delay='" + Math.round(1000 * getDuration() - 1) +
                "'/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
@@ -200,11 +276,11 @@ public class FlyOutEffect extends AnimationEffect {
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
@@ -57,6 +57,34 @@ public class GrowEffect extends AnimationEffect {
       parseOptions(options);
    }
 
+/*
+ * These methods create a Grow effect that scales the shape by the
+ * specified factor in both dimensions or by separate factors in each.
+ */
+
+   public static GrowEffect scale(double sf) {
+      return scale(sf, sf);
+   }
+
+   public static GrowEffect scale(double sx, double sy) {
+      GrowEffect effect = new GrowEffect();
+      effect.sx = sx;
+      effect.sy = sy;
+      return effect;
+   }
+
+   public GrowEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public GrowEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
    public void preOptionHook() {
       sx = sy = 1.0;
       setDuration("medium");
@@ -74,10 +102,14 @@ public class GrowEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:animScale>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("<p:by x='" + (int) Math.round(100000 * sx) +
@@ -98,11 +130,11 @@ public class GrowEffect extends AnimationEffect {
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
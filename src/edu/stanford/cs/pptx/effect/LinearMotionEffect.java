@@ -20,6 +20,54 @@ public class LinearMotionEffect extends AnimationEffect {
       sy = 1.0 / PPShow.HEIGHT;
    }
 
+/*
+ * Creates a motion effect that moves the shape by the specified distance
+ * in each dimension.  Unless a speed or duration is set, the shape moves
+ * at the speed of its motion path.
+ */
+
+   public static LinearMotionEffect by(double dx, double dy) {
+      LinearMotionEffect effect = new LinearMotionEffect();
+      effect.dx = dx;
+      effect.dy = dy;
+      return effect;
+   }
+
+   public LinearMotionEffect speed(double pixelsPerSecond) {
+      speed = pixelsPerSecond;
+      markChanged();
+      return this;
+   }
+
+   public LinearMotionEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public LinearMotionEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
+/*
+ * Returns the speed set for this effect, or a negative value if the
+ * effect moves at the speed of its motion path.
+ */
+
+   public double getSpeed() {
+      return speed;
+   }
+
+   public double getDX() {
+      return dx;
+   }
+
+   public double getDY() {
+      return dy;
+   }
+
    public void setState(MotionPathState state) {
       mpState = state;
    }
@@ -61,14 +109,20 @@ public class LinearMotionEffect extends AnimationEffect {
                "path='" + getMotionString(x0, y0) + "' " +
                "pathEditMode='relative' ptsTypes='AA'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>ppt_x</p:attrName>");
@@ -99,15 +153,15 @@ public class LinearMotionEffect extends AnimationEffect {
    }
 
    public void speedKey(String value) {
-      speed = Double.parseDouble(value);
+      speed(Double.parseDouble(value));
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
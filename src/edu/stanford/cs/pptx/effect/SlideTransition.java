@@ -8,6 +8,7 @@ package edu.stanford.cs.pptx.effect;
 
 import edu.stanford.cs.options.OptionParser;
 import edu.stanford.cs.pptx.util.PPOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SlideTransition extends OptionParser {
 
@@ -86,22 +87,29 @@ public class SlideTransition extends OptionParser {
       if (slash == -1) slash = options.length();
       String effectName = options.substring(0, slash);
       if (slash == 0) effectName = "No";
-      String className = SlideTransition.class.getName();
-      className = className.substring(0, className.lastIndexOf('.') + 1) +
-                  effectName + "Transition";
-      try {
-         Class<?> effectClass = Class.forName(className);
-         SlideTransition effect = (SlideTransition) effectClass.newInstance();
-         effect.parseOptions(options.substring(slash));
-         return effect;
-      } catch (ClassNotFoundException ex) {
+      SlideTransition effect = null;
+      TransitionFactory factory = transitionFactories.get(effectName);
+      if (factory != null) {
+         effect = factory.createTransition();
+      } else if (effectName.equals("No")) {
+         effect = new NoTransition();
+      }
+      if (effect == null) {
          throw new RuntimeException("Transition " + effectName +
                                     " is not yet implemented");
-      } catch (InstantiationException ex) {
-         throw new RuntimeException(ex);
-      } catch (IllegalAccessException ex) {
-         throw new RuntimeException(ex);
       }
+      effect.parseOptions(options.substring(slash));
+      return effect;
+   }
+
+/*
+ * Registers a factory for the transition with the specified name, which
+ * is used in place of any standard transition with that name.
+ */
+
+   public static void registerTransition(String name,
+                                         TransitionFactory factory) {
+      transitionFactories.put(name, factory);
    }
 
 /* Private instance variables */
@@ -109,4 +117,9 @@ public class SlideTransition extends OptionParser {
    private String speed;
    private double delay;
 
+/* Static variables */
+
+   private static ConcurrentHashMap<String,TransitionFactory>
+      transitionFactories = new ConcurrentHashMap<String,TransitionFactory>();
+
 }
@@ -51,6 +51,29 @@ public class SpinEffect extends AnimationEffect {
       parseOptions(options);
    }
 
+/*
+ * Creates a Spin effect that rotates the shape by the specified number of
+ * degrees.
+ */
+
+   public static SpinEffect rotate(double angle) {
+      SpinEffect effect = new SpinEffect();
+      effect.angle = angle;
+      return effect;
+   }
+
+   public SpinEffect accelerate() {
+      accFlag = true;
+      markChanged();
+      return this;
+   }
+
+   public SpinEffect decelerate() {
+      decFlag = true;
+      markChanged();
+      return this;
+   }
+
    public void preOptionHook() {
       angle = 360;
       setDuration("medium");
@@ -68,14 +91,20 @@ public class SpinEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:animRot by='" + (int) Math.round(60000 * angle) + "'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + " fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(" fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>r</p:attrName>");
@@ -89,11 +118,11 @@ public class SpinEffect extends AnimationEffect {
    }
 
    public void accKey(String value) {
-      accFlag = true;
+      accelerate();
    }
 
    public void decKey(String value) {
-      decFlag = true;
+      decelerate();
    }
 
 /* Private instance variables */
@@ -0,0 +1,26 @@
+/*
+ * File: TransitionFactory.java
+ * ----------------------------
+ * This interface creates slide transitions for the transition registry.
+ */
+
+package edu.stanford.cs.pptx.effect;
+
+/**
+ * This interface is implemented by objects that create slide transitions.
+ * A factory is registered with <code>SlideTransition.registerTransition</code>
+ * under the name used in option strings.
+ */
+
+public interface TransitionFactory {
+
+/**
+ * Creates a new transition with its default settings.  The options are
+ * applied by the caller.
+ *
+ * @return A new <code>SlideTransition</code>
+ */
+
+   public SlideTransition createTransition();
+
+}
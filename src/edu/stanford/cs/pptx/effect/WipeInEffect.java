@@ -49,6 +49,35 @@ public class WipeInEffect extends AnimationEffect {
       super("WipeIn");
    }
 
+/*
+ * Each of these methods creates a WipeIn effect that starts from the
+ * indicated side of the shape.
+ */
+
+   public static WipeInEffect fromTop() {
+      WipeInEffect effect = new WipeInEffect();
+      effect.fromTopKey(null);
+      return effect;
+   }
+
+   public static WipeInEffect fromRight() {
+      WipeInEffect effect = new WipeInEffect();
+      effect.fromRightKey(null);
+      return effect;
+   }
+
+   public static WipeInEffect fromBottom() {
+      WipeInEffect effect = new WipeInEffect();
+      effect.fromBottomKey(null);
+      return effect;
+   }
+
+   public static WipeInEffect fromLeft() {
+      WipeInEffect effect = new WipeInEffect();
+      effect.fromLeftKey(null);
+      return effect;
+   }
+
    @Override
    public String getPresetTag() {
       return "presetID='22' presetClass='entr' presetSubtype='" +
@@ -59,14 +88,19 @@ public class WipeInEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
@@ -76,10 +110,14 @@ public class WipeInEffect extends AnimationEffect {
       os.print("</p:set>");
       os.print("<p:animEffect transition='in' filter='" + filter + "'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + "/>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print("/>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("</p:animEffect>");
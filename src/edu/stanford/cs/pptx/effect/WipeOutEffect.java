@@ -49,6 +49,35 @@ public class WipeOutEffect extends AnimationEffect {
       super("WipeOut");
    }
 
+/*
+ * Each of these methods creates a WipeOut effect that starts from the
+ * indicated side of the shape.
+ */
+
+   public static WipeOutEffect fromTop() {
+      WipeOutEffect effect = new WipeOutEffect();
+      effect.fromTopKey(null);
+      return effect;
+   }
+
+   public static WipeOutEffect fromRight() {
+      WipeOutEffect effect = new WipeOutEffect();
+      effect.fromRightKey(null);
+      return effect;
+   }
+
+   public static WipeOutEffect fromBottom() {
+      WipeOutEffect effect = new WipeOutEffect();
+      effect.fromBottomKey(null);
+      return effect;
+   }
+
+   public static WipeOutEffect fromLeft() {
+      WipeOutEffect effect = new WipeOutEffect();
+      effect.fromLeftKey(null);
+      return effect;
+   }
+
    @Override
    public String getPresetTag() {
       return "presetID='22' presetClass='exit' presetSubtype='" +
@@ -59,28 +88,37 @@ public class WipeOutEffect extends AnimationEffect {
    public void dumpBehavior(PPOutputStream os, String delayTag) {
       os.print("<p:animEffect transition='out' filter='" + filter + "'>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               getDurationTag() + ">");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      printDuration(os);
+      os.print(">");
       os.print("<p:stCondLst>");
-      os.print("<p:cond " + delayTag + "/>");
+      os.print("<p:cond ");
+      os.print(delayTag);
+      os.print("/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("</p:cBhvr>");
       os.print("</p:animEffect>");
       os.print("<p:set>");
       os.print("<p:cBhvr>");
-      os.print("<p:cTn id='" + os.getNextSequenceId() + "' " +
-               "dur='1' fill='hold'>");
+      os.print("<p:cTn");
+      os.printAttr("id", os.getNextSequenceId());
+      os.print(" dur='1' fill='hold'>");
       os.print("<p:stCondLst>");
       os.print("<p:cond delay='" + Math.round(1000 * getDuration() - 1) +
                "'/>");
       os.print("</p:stCondLst>");
       os.print("</p:cTn>");
       os.print("<p:tgtEl>");
-      os.print("<p:spTgt spid='" + getShape().getShapeId() + "'/>");
+      os.print("<p:spTgt");
+      os.printAttr("spid", getShape().getShapeId());
+      os.print("/>");
       os.print("</p:tgtEl>");
       os.print("<p:attrNameLst>");
       os.print("<p:attrName>style.visibility</p:attrName>");
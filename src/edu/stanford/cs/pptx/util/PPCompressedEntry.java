@@ -0,0 +1,81 @@
+/*
+ * File: PPCompressedEntry.java
+ * ----------------------------
+ * This class represents a ZIP entry whose data has already been
+ * compressed, which allows the same entry to be copied into many
+ * packages without compressing it again.
+ */
+
+package edu.stanford.cs.pptx.util;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+public class PPCompressedEntry {
+
+   public PPCompressedEntry(String name, int method, long crc, long size,
+                            byte[] data) {
+      this.name = name;
+      this.method = method;
+      this.crc = crc;
+      this.size = size;
+      this.data = data;
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   public int getMethod() {
+      return method;
+   }
+
+   public long getCrc() {
+      return crc;
+   }
+
+   public long getSize() {
+      return size;
+   }
+
+   public long getCompressedSize() {
+      return data.length;
+   }
+
+   public byte[] getData() {
+      return data;
+   }
+
+/* Static methods */
+
+   public static PPCompressedEntry compress(String name, byte[] bytes) {
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      deflater.setInput(bytes, 0, bytes.length);
+      deflater.finish();
+      byte[] buffer = new byte[Math.max(64, bytes.length / 2)];
+      int count = 0;
+      while (!deflater.finished()) {
+         if (count == buffer.length) {
+            buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+         }
+         count += deflater.deflate(buffer, count, buffer.length - count);
+      }
+      deflater.end();
+      return new PPCompressedEntry(name, ZipEntry.DEFLATED, crc.getValue(),
+                                   bytes.length,
+                                   Arrays.copyOf(buffer, count));
+   }
+
+/* Private instance variables */
+
+   private String name;
+   private byte[] data;
+   private long crc;
+   private long size;
+   private int method;
+
+}
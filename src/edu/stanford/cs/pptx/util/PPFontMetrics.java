@@ -0,0 +1,155 @@
+/*
+ * File: PPFontMetrics.java
+ * ------------------------
+ * This class measures strings using tables of character widths that are
+ * computed once for each font and shared by all the shapes that use it.
+ */
+
+package edu.stanford.cs.pptx.util;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.util.HashMap;
+
+/**
+ * This class provides the measurements of a font that are needed to lay
+ * out text.  The metrics for each font are created once and cached, and
+ * the widths of the characters in the Latin-1 range are stored in a table
+ * so that measuring a string does not need to call the AWT.  The results
+ * are the same as those from the AWT <code>FontMetrics</code> object for
+ * the font, which is used for any string the table does not cover.
+ */
+
+public class PPFontMetrics {
+
+   private PPFontMetrics(Font font) {
+      fm = PPUtil.getEmptyContainer().getFontMetrics(font);
+      simple = !font.hasLayoutAttributes();
+      advances = new float[N_CACHED_CHARS];
+      FontRenderContext frc = fm.getFontRenderContext();
+      char[] chars = new char[1];
+      for (int i = 0; i < N_CACHED_CHARS; i++) {
+         chars[0] = (char) i;
+         advances[i] = font.createGlyphVector(frc, chars)
+                           .getGlyphMetrics(0).getAdvance();
+      }
+      ascent = fm.getAscent();
+      descent = fm.getDescent();
+      height = fm.getHeight();
+   }
+
+/**
+ * Returns the shared metrics object for the specified font.
+ *
+ * @param font The font
+ * @return The <code>PPFontMetrics</code> object for the font
+ */
+
+   public static PPFontMetrics getFontMetrics(Font font) {
+      synchronized (metricsCache) {
+         PPFontMetrics metrics = metricsCache.get(font);
+         if (metrics == null) {
+            metrics = new PPFontMetrics(font);
+            metricsCache.put(font, metrics);
+         }
+         return metrics;
+      }
+   }
+
+/**
+ * Returns the width of the string in points.
+ *
+ * @param str The string
+ * @return The width of the string
+ */
+
+   public int stringWidth(String str) {
+      return stringWidth(str, 0, str.length());
+   }
+
+/**
+ * Returns the width of the characters in the string between the
+ * specified indices.  As in the AWT, the widths of the characters are
+ * added before the total is rounded.
+ *
+ * @param str The string
+ * @param p1 The index of the starting character
+ * @param p2 The index of the character following the end
+ * @return The width of the substring
+ */
+
+   public int stringWidth(String str, int p1, int p2) {
+      if (simple) {
+         float width = 0;
+         int i = p1;
+         while (i < p2) {
+            char ch = str.charAt(i);
+            if (ch >= N_CACHED_CHARS) break;
+            width += advances[ch];
+            i++;
+         }
+         if (i == p2) return (int) (0.5F + width);
+      }
+      return fm.stringWidth(str.substring(p1, p2));
+   }
+
+/**
+ * Returns the ascent of the font.
+ *
+ * @return The ascent of the font
+ */
+
+   public int getAscent() {
+      return ascent;
+   }
+
+/**
+ * Returns the descent of the font.
+ *
+ * @return The descent of the font
+ */
+
+   public int getDescent() {
+      return descent;
+   }
+
+/**
+ * Returns the standard height of a line of text in the font.
+ *
+ * @return The height of a line
+ */
+
+   public int getHeight() {
+      return height;
+   }
+
+/**
+ * Returns the AWT <code>FontMetrics</code> object for the font.
+ *
+ * @return The AWT font metrics
+ */
+
+   public FontMetrics getFontMetrics() {
+      return fm;
+   }
+
+/* Private constants */
+
+   private static final int N_CACHED_CHARS = 256;
+
+/* Private instance variables */
+
+   private FontMetrics fm;
+   private boolean simple;
+   private float[] advances;
+   private int ascent;
+   private int descent;
+   private int height;
+
+/* Static variables */
+
+   private static HashMap<Font,PPFontMetrics> metricsCache =
+      new HashMap<Font,PPFontMetrics>();
+
+}
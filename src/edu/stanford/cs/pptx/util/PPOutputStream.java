@@ -1,7 +1,7 @@
 /*
  * File: PPOutputStream.java
  * -------------------------
- * This class extends ZipOutputStream to support writing .pptx files.
+ * This class extends PPZipOutputStream to support writing .pptx files.
  */
 
 package edu.stanford.cs.pptx.util;
@@ -11,22 +11,83 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.ZipOutputStream;
 
-public class PPOutputStream extends ZipOutputStream {
+public class PPOutputStream extends PPZipOutputStream {
 
    public PPOutputStream(File file) {
       super(createStream(file));
       offsetX = 0;
       offsetY = 0;
+      encoded = new byte[ENCODE_BUFFER_SIZE];
+   }
+
+/*
+ * Creates a stream that writes the package to an existing output stream,
+ * which is buffered but not closed when the package is finished.
+ */
+
+   public PPOutputStream(OutputStream out) {
+      super(new BufferedOutputStream(out));
+      offsetX = 0;
+      offsetY = 0;
+      encoded = new byte[ENCODE_BUFFER_SIZE];
+   }
+
+/*
+ * Creates a detached stream that collects compressed entries in memory
+ * so that they can be copied into a package later.
+ */
+
+   public PPOutputStream() {
+      super();
+      offsetX = 0;
+      offsetY = 0;
+      encoded = new byte[ENCODE_BUFFER_SIZE];
    }
 
    public void print(String str) {
-      try {
-         write(str.getBytes("UTF-8"));
-      } catch (IOException ex) {
-         throw new RuntimeException(ex.toString());
-      }
+      print((CharSequence) str);
+   }
+
+/*
+ * Writes the characters in UTF-8 using a buffer that is reused for every
+ * call, so that printing does not allocate.
+ */
+
+   public void print(CharSequence str) {
+      encodeChars(str);
+      flushEncoded();
+   }
+
+   public void print(char ch) {
+      encodeCodePoint(Character.isSurrogate(ch) ? '?' : ch);
+      flushEncoded();
+   }
+
+/*
+ * The following methods format numbers directly into the output buffer,
+ * which avoids the temporary strings created by concatenation.  The
+ * attribute methods write a leading space so that calls can be chained
+ * after the element name, as in <a:ext cx='...' cy='...'/>.
+ */
+
+   public void print(int value) {
+      encodeInt(value);
+      flushEncoded();
+   }
+
+   public void printAttr(String name, int value) {
+      encodeChars(" ");
+      encodeChars(name);
+      encodeChars("='");
+      encodeInt(value);
+      encodeChars("'");
+      flushEncoded();
+   }
+
+   public void printOffset(double x, double y) {
+      printAttr("x", PPUtil.pointsToUnits(x + offsetX));
+      printAttr("y", PPUtil.pointsToUnits(y + offsetY));
    }
 
    public void println() {
@@ -55,6 +116,13 @@ public class PPOutputStream extends ZipOutputStream {
       offsetY += dy;
    }
 
+/*
+ * Returns the offset attributes as a string.  This method is kept for
+ * existing callers; printOffset writes the same attributes without
+ * creating a string.
+ */
+
+   @Deprecated
    public String getOffsetTag(double x, double y) {
       return "x='" + PPUtil.pointsToUnits(x + offsetX) +
              "' y='" + PPUtil.pointsToUnits(y + offsetY) + "'";
@@ -75,6 +143,76 @@ public class PPOutputStream extends ZipOutputStream {
 
 /* Private methods */
 
+/*
+ * Encodes the characters in UTF-8.  ASCII characters, which make up
+ * almost all of the XML, are copied without further checks.  As in
+ * String.getBytes, an unpaired surrogate is written as a question mark.
+ */
+
+   private void encodeChars(CharSequence str) {
+      int n = str.length();
+      int i = 0;
+      while (i < n) {
+         char ch = str.charAt(i++);
+         if (ch < 0x80) {
+            if (nEncoded == ENCODE_BUFFER_SIZE) flushEncoded();
+            encoded[nEncoded++] = (byte) ch;
+         } else if (Character.isHighSurrogate(ch) && i < n &&
+                    Character.isLowSurrogate(str.charAt(i))) {
+            encodeCodePoint(Character.toCodePoint(ch, str.charAt(i++)));
+         } else {
+            encodeCodePoint(Character.isSurrogate(ch) ? '?' : ch);
+         }
+      }
+   }
+
+   private void encodeInt(int value) {
+      if (nEncoded > ENCODE_BUFFER_SIZE - 11) flushEncoded();
+      long n = value;
+      if (n < 0) {
+         encoded[nEncoded++] = '-';
+         n = -n;
+      }
+      int start = nEncoded;
+      do {
+         encoded[nEncoded++] = (byte) ('0' + n % 10);
+         n /= 10;
+      } while (n > 0);
+      for (int i = start, j = nEncoded - 1; i < j; i++, j--) {
+         byte tmp = encoded[i];
+         encoded[i] = encoded[j];
+         encoded[j] = tmp;
+      }
+   }
+
+   private void encodeCodePoint(int cp) {
+      if (nEncoded > ENCODE_BUFFER_SIZE - 4) flushEncoded();
+      if (cp < 0x80) {
+         encoded[nEncoded++] = (byte) cp;
+      } else if (cp < 0x800) {
+         encoded[nEncoded++] = (byte) (0xC0 | cp >> 6);
+         encoded[nEncoded++] = (byte) (0x80 | cp & 0x3F);
+      } else if (cp < 0x10000) {
+         encoded[nEncoded++] = (byte) (0xE0 | cp >> 12);
+         encoded[nEncoded++] = (byte) (0x80 | cp >> 6 & 0x3F);
+         encoded[nEncoded++] = (byte) (0x80 | cp & 0x3F);
+      } else {
+         encoded[nEncoded++] = (byte) (0xF0 | cp >> 18);
+         encoded[nEncoded++] = (byte) (0x80 | cp >> 12 & 0x3F);
+         encoded[nEncoded++] = (byte) (0x80 | cp >> 6 & 0x3F);
+         encoded[nEncoded++] = (byte) (0x80 | cp & 0x3F);
+      }
+   }
+
+   private void flushEncoded() {
+      try {
+         write(encoded, 0, nEncoded);
+      } catch (IOException ex) {
+         throw new RuntimeException(ex.toString());
+      }
+      nEncoded = 0;
+   }
+
    private static OutputStream createStream(File file) {
       try {
          return new BufferedOutputStream(new FileOutputStream(file));
@@ -83,11 +221,17 @@ public class PPOutputStream extends ZipOutputStream {
       }
    }
 
+/* Private constants */
+
+   private static final int ENCODE_BUFFER_SIZE = 1024;
+
 /* Private instance variables */
 
+   private byte[] encoded;
    private double offsetX;
    private double offsetY;
    private int grpId;
+   private int nEncoded;
    private int seqId;
 
 }
@@ -0,0 +1,298 @@
+/*
+ * File: PPPngEncoder.java
+ * -----------------------
+ * This class writes compact PNG files for images that use few colors or
+ * only shades of grey, which are stored inefficiently as 32-bit images.
+ */
+
+package edu.stanford.cs.pptx.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class PPPngEncoder {
+
+   private PPPngEncoder() {
+      /* Don't allow instantiation */
+   }
+
+/**
+ * Encodes the image as a PNG file using a palette if the image contains
+ * at most 256 colors or using greyscale with an alpha channel if every
+ * pixel is grey.  If neither representation applies, this method returns
+ * <code>null</code> so that the caller can use a general-purpose encoder.
+ * Pixels that are fully transparent are treated as a single color.
+ *
+ * @param image The image to encode
+ * @return The bytes of the PNG file, or <code>null</code>
+ */
+
+   public static byte[] encode(BufferedImage image) {
+      int width = image.getWidth();
+      int height = image.getHeight();
+      int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+      boolean grey = true;
+      for (int i = 0; i < pixels.length; i++) {
+         int argb = pixels[i];
+         if (argb >>> 24 == 0) {
+            pixels[i] = argb = 0;
+         }
+         int r = argb >> 16 & 0xFF;
+         if (r != (argb >> 8 & 0xFF) || r != (argb & 0xFF)) grey = false;
+      }
+      int[] palette = createPalette(pixels);
+      if (palette != null) {
+         return encodeIndexed(pixels, width, height, palette);
+      } else if (grey) {
+         return encodeGrey(pixels, width, height);
+      }
+      return null;
+   }
+
+/* Private methods */
+
+/*
+ * Returns the distinct colors in the image, with the colors that are not
+ * opaque first so that the transparency chunk is as short as possible,
+ * or null if there are more than 256 colors.
+ */
+
+   private static int[] createPalette(int[] pixels) {
+      int[] colors = new int[MAX_COLORS];
+      int nColors = 0;
+      int[] table = new int[HASH_SIZE];
+      Arrays.fill(table, -1);
+      int last = 0;
+      boolean seen = false;
+      for (int i = 0; i < pixels.length; i++) {
+         int argb = pixels[i];
+         if (seen && argb == last) continue;
+         int h = hash(argb);
+         while (table[h] != -1 && colors[table[h]] != argb) {
+            h = (h + 1) & (HASH_SIZE - 1);
+         }
+         if (table[h] == -1) {
+            if (nColors == MAX_COLORS) return null;
+            table[h] = nColors;
+            colors[nColors++] = argb;
+         }
+         last = argb;
+         seen = true;
+      }
+      int[] palette = new int[nColors];
+      int k = 0;
+      for (int i = 0; i < nColors; i++) {
+         if (colors[i] >>> 24 != 0xFF) palette[k++] = colors[i];
+      }
+      for (int i = 0; i < nColors; i++) {
+         if (colors[i] >>> 24 == 0xFF) palette[k++] = colors[i];
+      }
+      return palette;
+   }
+
+   private static byte[] encodeIndexed(int[] pixels, int width, int height,
+                                       int[] palette) {
+      int n = palette.length;
+      int depth = (n <= 2) ? 1 : (n <= 4) ? 2 : (n <= 16) ? 4 : 8;
+      int[] table = new int[HASH_SIZE];
+      Arrays.fill(table, -1);
+      for (int i = 0; i < n; i++) {
+         int h = hash(palette[i]);
+         while (table[h] != -1) {
+            h = (h + 1) & (HASH_SIZE - 1);
+         }
+         table[h] = i;
+      }
+      int rowBytes = (width * depth + 7) / 8;
+      byte[] data = new byte[height * (rowBytes + 1)];
+      int p = 0;
+      for (int y = 0; y < height; y++) {
+         data[p++] = FILTER_NONE;
+         int bits = 0;
+         int nBits = 0;
+         for (int x = 0; x < width; x++) {
+            int argb = pixels[y * width + x];
+            int h = hash(argb);
+            while (palette[table[h]] != argb) {
+               h = (h + 1) & (HASH_SIZE - 1);
+            }
+            bits = bits << depth | table[h];
+            nBits += depth;
+            if (nBits == 8) {
+               data[p++] = (byte) bits;
+               bits = 0;
+               nBits = 0;
+            }
+         }
+         if (nBits > 0) data[p++] = (byte) (bits << (8 - nBits));
+      }
+      byte[] plte = new byte[3 * n];
+      int nAlpha = 0;
+      for (int i = 0; i < n; i++) {
+         plte[3 * i] = (byte) (palette[i] >> 16);
+         plte[3 * i + 1] = (byte) (palette[i] >> 8);
+         plte[3 * i + 2] = (byte) palette[i];
+         if (palette[i] >>> 24 != 0xFF) nAlpha = i + 1;
+      }
+      byte[] trns = new byte[nAlpha];
+      for (int i = 0; i < nAlpha; i++) {
+         trns[i] = (byte) (palette[i] >>> 24);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writeHeader(out, width, height, depth, COLOR_INDEXED);
+      writeChunk(out, "PLTE", plte);
+      if (nAlpha > 0) writeChunk(out, "tRNS", trns);
+      writeChunk(out, "IDAT", deflate(data));
+      writeChunk(out, "IEND", new byte[0]);
+      return out.toByteArray();
+   }
+
+/*
+ * Writes an image whose pixels are all grey using one byte for the grey
+ * level and one for the alpha value.  An opaque grey image never gets
+ * here, since it has at most 256 colors.  Each row uses whichever filter
+ * gives the smallest sum of absolute differences, which is the heuristic
+ * recommended by the PNG specification for images that are not indexed.
+ */
+
+   private static byte[] encodeGrey(int[] pixels, int width, int height) {
+      int bpp = 2;
+      int rowBytes = width * bpp;
+      byte[] prior = new byte[rowBytes];
+      byte[] row = new byte[rowBytes];
+      byte[] best = new byte[rowBytes];
+      byte[] trial = new byte[rowBytes];
+      byte[] data = new byte[height * (rowBytes + 1)];
+      int p = 0;
+      for (int y = 0; y < height; y++) {
+         for (int x = 0; x < width; x++) {
+            int argb = pixels[y * width + x];
+            row[x * bpp] = (byte) argb;
+            row[x * bpp + 1] = (byte) (argb >>> 24);
+         }
+         int bestFilter = 0;
+         long bestSum = Long.MAX_VALUE;
+         for (int filter = 0; filter < N_FILTERS; filter++) {
+            long sum = applyFilter(filter, row, prior, bpp, trial);
+            if (sum < bestSum) {
+               bestSum = sum;
+               bestFilter = filter;
+               byte[] tmp = best;
+               best = trial;
+               trial = tmp;
+            }
+         }
+         data[p++] = (byte) bestFilter;
+         System.arraycopy(best, 0, data, p, rowBytes);
+         p += rowBytes;
+         byte[] tmp = prior;
+         prior = row;
+         row = tmp;
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writeHeader(out, width, height, 8, COLOR_GREY_ALPHA);
+      writeChunk(out, "IDAT", deflate(data));
+      writeChunk(out, "IEND", new byte[0]);
+      return out.toByteArray();
+   }
+
+   private static long applyFilter(int filter, byte[] row, byte[] prior,
+                                   int bpp, byte[] result) {
+      long sum = 0;
+      for (int i = 0; i < row.length; i++) {
+         int a = (i >= bpp) ? row[i - bpp] & 0xFF : 0;
+         int b = prior[i] & 0xFF;
+         int c = (i >= bpp) ? prior[i - bpp] & 0xFF : 0;
+         int x = row[i] & 0xFF;
+         switch (filter) {
+          case 1: x -= a; break;
+          case 2: x -= b; break;
+          case 3: x -= (a + b) / 2; break;
+          case 4: x -= paeth(a, b, c); break;
+          default: break;
+         }
+         result[i] = (byte) x;
+         sum += Math.abs((int) (byte) x);
+      }
+      return sum;
+   }
+
+   private static int paeth(int a, int b, int c) {
+      int p = a + b - c;
+      int pa = Math.abs(p - a);
+      int pb = Math.abs(p - b);
+      int pc = Math.abs(p - c);
+      if (pa <= pb && pa <= pc) return a;
+      return (pb <= pc) ? b : c;
+   }
+
+   private static byte[] deflate(byte[] data) {
+      Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+         int n = deflater.deflate(buffer);
+         out.write(buffer, 0, n);
+      }
+      deflater.end();
+      return out.toByteArray();
+   }
+
+   private static void writeHeader(ByteArrayOutputStream out,
+                                   int width, int height,
+                                   int depth, int colorType) {
+      out.write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+      byte[] ihdr = new byte[13];
+      putInt(ihdr, 0, width);
+      putInt(ihdr, 4, height);
+      ihdr[8] = (byte) depth;
+      ihdr[9] = (byte) colorType;
+      writeChunk(out, "IHDR", ihdr);
+   }
+
+   private static void writeChunk(ByteArrayOutputStream out, String type,
+                                  byte[] data) {
+      byte[] header = new byte[8];
+      putInt(header, 0, data.length);
+      for (int i = 0; i < 4; i++) {
+         header[4 + i] = (byte) type.charAt(i);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(header, 4, 4);
+      crc.update(data, 0, data.length);
+      byte[] trailer = new byte[4];
+      putInt(trailer, 0, (int) crc.getValue());
+      out.write(header, 0, header.length);
+      out.write(data, 0, data.length);
+      out.write(trailer, 0, trailer.length);
+   }
+
+   private static void putInt(byte[] bytes, int offset, int value) {
+      bytes[offset] = (byte) (value >>> 24);
+      bytes[offset + 1] = (byte) (value >>> 16);
+      bytes[offset + 2] = (byte) (value >>> 8);
+      bytes[offset + 3] = (byte) value;
+   }
+
+   private static int hash(int argb) {
+      return (argb * 0x9E3779B1 >>> 16) & (HASH_SIZE - 1);
+   }
+
+/* Private constants */
+
+   private static final byte[] PNG_SIGNATURE = {
+      (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+   };
+   private static final byte FILTER_NONE = 0;
+   private static final int COLOR_INDEXED = 3;
+   private static final int COLOR_GREY_ALPHA = 4;
+   private static final int HASH_SIZE = 1024;
+   private static final int MAX_COLORS = 256;
+   private static final int N_FILTERS = 5;
+
+}
@@ -43,6 +43,20 @@ public class PPUtil {
       return (int) Math.round(WIDTH_SCALE * fm.stringWidth(str) + WIDTH_PAD);
    }
 
+/**
+ * Returns a padded width for the string as described above, using the
+ * shared metrics for the font.
+ *
+ * @param str The string
+ * @param metrics The <code>PPFontMetrics</code> object for the current font
+ * @return The padded width as an integer
+ */
+
+   public static int getPaddedWidth(String str, PPFontMetrics metrics) {
+      return (int) Math.round(WIDTH_SCALE * metrics.stringWidth(str) +
+                              WIDTH_PAD);
+   }
+
 /**
  * Returns an empty container that can be used as to derive font metrics
  * or serve as an image observer.  This method returns the same empty
@@ -0,0 +1,326 @@
+/*
+ * File: PPZipOutputStream.java
+ * ----------------------------
+ * This class writes a ZIP archive in which each entry is compressed in
+ * memory before it is written.  Because the size and checksum of every
+ * entry are known before its header is written, entries that were
+ * compressed ahead of time can be copied into the archive verbatim.
+ */
+
+package edu.stanford.cs.pptx.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+public class PPZipOutputStream extends OutputStream {
+
+   public PPZipOutputStream(OutputStream out) {
+      this.out = out;
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      crc = new CRC32();
+      inBuffer = new byte[INPUT_BUFFER_SIZE];
+      outBuffer = new byte[INPUT_BUFFER_SIZE];
+      directory = new ArrayList<DirectoryRecord>();
+      names = new HashSet<String>();
+      setTime(System.currentTimeMillis());
+   }
+
+/*
+ * Creates a detached stream that compresses entries without writing an
+ * archive.  The finished entries are available from getEntries and can
+ * later be copied into an archive using writeEntry.
+ */
+
+   public PPZipOutputStream() {
+      this(null);
+      entries = new ArrayList<PPCompressedEntry>();
+   }
+
+/*
+ * Sets the modification time recorded for entries that do not specify
+ * a time of their own.
+ */
+
+   public void setTime(long time) {
+      Calendar cal = Calendar.getInstance();
+      cal.setTimeInMillis(time);
+      int year = Math.max(cal.get(Calendar.YEAR), 1980);
+      dosDate = (year - 1980) << 9 |
+                (cal.get(Calendar.MONTH) + 1) << 5 |
+                cal.get(Calendar.DAY_OF_MONTH);
+      dosTime = cal.get(Calendar.HOUR_OF_DAY) << 11 |
+                cal.get(Calendar.MINUTE) << 5 |
+                cal.get(Calendar.SECOND) >> 1;
+   }
+
+   public void putNextEntry(ZipEntry entry) throws IOException {
+      if (entryName != null) closeEntry();
+      checkName(entry.getName());
+      entryName = entry.getName();
+      crc.reset();
+      deflater.reset();
+      inCount = 0;
+      outCount = 0;
+   }
+
+   public void closeEntry() throws IOException {
+      if (entryName == null) return;
+      flushInput();
+      deflater.finish();
+      while (!deflater.finished()) {
+         deflateOutput();
+      }
+      String name = entryName;
+      entryName = null;
+      writeRecord(new PPCompressedEntry(name, ZipEntry.DEFLATED,
+                                        crc.getValue(),
+                                        deflater.getBytesRead(),
+                                        Arrays.copyOf(outBuffer, outCount)));
+   }
+
+/*
+ * Copies an entry that has already been compressed into the archive.
+ */
+
+   public void writeEntry(PPCompressedEntry entry) throws IOException {
+      if (entryName != null) closeEntry();
+      checkName(entry.getName());
+      writeRecord(entry);
+   }
+
+/*
+ * Returns the entries written to a detached stream.
+ */
+
+   public ArrayList<PPCompressedEntry> getEntries() {
+      if (entries == null) {
+         throw new IllegalStateException("Stream is not detached");
+      }
+      return entries;
+   }
+
+   @Override
+   public void write(int b) throws IOException {
+      if (entryName == null) throw new ZipException("No current entry");
+      if (inCount == inBuffer.length) flushInput();
+      inBuffer[inCount++] = (byte) b;
+   }
+
+   @Override
+   public void write(byte[] bytes, int offset, int length)
+                     throws IOException {
+      if (entryName == null) throw new ZipException("No current entry");
+      while (length > 0) {
+         if (inCount == inBuffer.length) flushInput();
+         int n = Math.min(length, inBuffer.length - inCount);
+         System.arraycopy(bytes, offset, inBuffer, inCount, n);
+         inCount += n;
+         offset += n;
+         length -= n;
+      }
+   }
+
+   public void finish() throws IOException {
+      if (finished) return;
+      if (entryName != null) closeEntry();
+      deflater.end();
+      if (out == null) {
+         finished = true;
+         return;
+      }
+      long start = written;
+      for (DirectoryRecord record : directory) {
+         PPCompressedEntry entry = record.entry;
+         writeInt(CENTRAL_HEADER_SIGNATURE);
+         writeShort(getVersion(entry));
+         writeShort(getVersion(entry));
+         writeShort(UTF8_FLAG);
+         writeShort(entry.getMethod());
+         writeShort(dosTime);
+         writeShort(dosDate);
+         writeInt(entry.getCrc());
+         writeInt(entry.getCompressedSize());
+         writeInt(entry.getSize());
+         writeShort(record.nameBytes.length);
+         writeShort(0);
+         writeShort(0);
+         writeShort(0);
+         writeShort(0);
+         writeInt(0);
+         writeInt(record.offset);
+         writeBytes(record.nameBytes, 0, record.nameBytes.length);
+      }
+      long size = written - start;
+      if (directory.size() > MAX_ENTRIES || written > MAX_SIZE) {
+         throw new ZipException("Archive exceeds the limits of the " +
+                                "ZIP format without ZIP64 extensions");
+      }
+      writeInt(END_SIGNATURE);
+      writeShort(0);
+      writeShort(0);
+      writeShort(directory.size());
+      writeShort(directory.size());
+      writeInt(size);
+      writeInt(start);
+      writeShort(0);
+      out.flush();
+      finished = true;
+   }
+
+/*
+ * Releases the compressor without finishing the archive.  This method
+ * may be called more than once and is used to clean up after an error.
+ */
+
+   public void end() {
+      deflater.end();
+   }
+
+   @Override
+   public void flush() throws IOException {
+      if (out != null) out.flush();
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (closed) return;
+      try {
+         finish();
+      } finally {
+         closed = true;
+         deflater.end();
+         if (out != null) out.close();
+      }
+   }
+
+/* Private methods */
+
+   private void writeRecord(PPCompressedEntry entry) throws IOException {
+      if (out == null) {
+         entries.add(entry);
+         return;
+      }
+      byte[] nameBytes = entry.getName().getBytes(StandardCharsets.UTF_8);
+      long size = entry.getSize();
+      if (size > MAX_SIZE || entry.getCompressedSize() > MAX_SIZE) {
+         throw new ZipException("Entry too large: " + entry.getName());
+      }
+      DirectoryRecord record = new DirectoryRecord();
+      record.entry = entry;
+      record.nameBytes = nameBytes;
+      record.offset = written;
+      directory.add(record);
+      writeInt(LOCAL_HEADER_SIGNATURE);
+      writeShort(getVersion(entry));
+      writeShort(UTF8_FLAG);
+      writeShort(entry.getMethod());
+      writeShort(dosTime);
+      writeShort(dosDate);
+      writeInt(entry.getCrc());
+      writeInt(entry.getCompressedSize());
+      writeInt(entry.getSize());
+      writeShort(nameBytes.length);
+      writeShort(0);
+      writeBytes(nameBytes, 0, nameBytes.length);
+      writeBytes(entry.getData(), 0, entry.getData().length);
+   }
+
+   private void checkName(String name) throws ZipException {
+      if (finished) throw new ZipException("Archive is already finished");
+      if (!names.add(name)) {
+         throw new ZipException("duplicate entry: " + name);
+      }
+   }
+
+   private void flushInput() {
+      if (inCount == 0) return;
+      crc.update(inBuffer, 0, inCount);
+      deflater.setInput(inBuffer, 0, inCount);
+      while (!deflater.needsInput()) {
+         deflateOutput();
+      }
+      inCount = 0;
+   }
+
+   private void deflateOutput() {
+      if (outCount == outBuffer.length) {
+         outBuffer = Arrays.copyOf(outBuffer, 2 * outBuffer.length);
+      }
+      outCount += deflater.deflate(outBuffer, outCount,
+                                   outBuffer.length - outCount);
+   }
+
+   private int getVersion(PPCompressedEntry entry) {
+      return (entry.getMethod() == ZipEntry.STORED) ? 10 : 20;
+   }
+
+   private void writeShort(int v) throws IOException {
+      out.write(v & 0xFF);
+      out.write((v >>> 8) & 0xFF);
+      written += 2;
+   }
+
+   private void writeInt(long v) throws IOException {
+      out.write((int) (v & 0xFF));
+      out.write((int) ((v >>> 8) & 0xFF));
+      out.write((int) ((v >>> 16) & 0xFF));
+      out.write((int) ((v >>> 24) & 0xFF));
+      written += 4;
+   }
+
+   private void writeBytes(byte[] bytes, int offset, int length)
+                throws IOException {
+      out.write(bytes, offset, length);
+      written += length;
+   }
+
+/* Private constants */
+
+   private static final int INPUT_BUFFER_SIZE = 8192;
+   private static final int LOCAL_HEADER_SIGNATURE = 0x04034B50;
+   private static final int CENTRAL_HEADER_SIGNATURE = 0x02014B50;
+   private static final int END_SIGNATURE = 0x06054B50;
+   private static final int UTF8_FLAG = 0x0800;
+   private static final int MAX_ENTRIES = 0xFFFF;
+   private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+/* Private instance variables */
+
+   private ArrayList<DirectoryRecord> directory;
+   private ArrayList<PPCompressedEntry> entries;
+   private CRC32 crc;
+   private Deflater deflater;
+   private HashSet<String> names;
+   private OutputStream out;
+   private String entryName;
+   private boolean closed;
+   private boolean finished;
+   private byte[] inBuffer;
+   private byte[] outBuffer;
+   private int dosDate;
+   private int dosTime;
+   private int inCount;
+   private int outCount;
+   private long written;
+
+}
+
+/**
+ * This class records the information about an entry that must be
+ * repeated in the central directory at the end of the archive.
+ */
+
+class DirectoryRecord {
+   PPCompressedEntry entry;
+   byte[] nameBytes;
+   long offset;
+}